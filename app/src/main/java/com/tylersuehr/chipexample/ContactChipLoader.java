@@ -0,0 +1,95 @@
+package com.tylersuehr.chipexample;
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Loads the contacts Cursor on a background thread, and hands it to a
+ * {@link ContactChipProvider}, which owns it from then on.
+ *
+ * A CursorLoader closes its Cursor whenever it loads a new one, while the chips
+ * input may still be loading a page from it on its filtering thread. This closes
+ * the old provider instead, which waits for any page being loaded.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+class ContactChipLoader extends AsyncTaskLoader<ContactChipProvider> {
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private ContactChipProvider provider;
+
+
+    ContactChipLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public ContactChipProvider loadInBackground() {
+        Cursor cursor = getContext().getContentResolver().query(
+                ContactsContract.CommonDataKinds.Phone.CONTENT_URI,// Content provider
+                null, null, null,
+                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME_PRIMARY + " ASC"); // OrderBy clause
+        if (cursor == null) {
+            return null;
+        }
+
+        // Counting fills the Cursor here, instead of on the main thread
+        cursor.getCount();
+        cursor.registerContentObserver(observer);
+        return new ContactChipProvider(cursor, getContext().getResources());
+    }
+
+    @Override
+    public void deliverResult(ContactChipProvider data) {
+        if (isReset()) {
+            close(data);
+            return;
+        }
+
+        // The old provider is closed once the new one has been delivered
+        ContactChipProvider old = provider;
+        provider = data;
+        if (isStarted()) {
+            super.deliverResult(data);
+        }
+        if (old != null && old != data) {
+            close(old);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (provider != null) {
+            deliverResult(provider);
+        }
+        if (takeContentChanged() || provider == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(ContactChipProvider data) {
+        close(data);
+    }
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+        close(provider);
+        provider = null;
+    }
+
+    private static void close(ContactChipProvider provider) {
+        if (provider != null) {
+            provider.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tylersuehr.chipexample;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import com.tylersuehr.chips.ChipProvider;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Provides a {@link ContactChip} for each row of a contacts Cursor, only when it's
+ * loaded, so that the chips don't all have to be made up front.
+ *
+ * The ID of each chip is its row position, so finding a chip by its ID doesn't need
+ * to look through the Cursor at all.
+ *
+ * This owns the Cursor, which is only closed by {@link #close()}; chips are loaded on
+ * the filtering thread too, so the Cursor is only used while holding this lock. Once
+ * closed, no more chips are loaded, but the count stays the same.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+class ContactChipProvider implements ChipProvider, Closeable {
+    private final Cursor cursor;
+    private final Resources resources;
+    private final int count;
+    private boolean closed;
+
+    /* Column indices, found once instead of on every row */
+    private final int nameColumn;
+    private final int phoneColumn;
+    private final int phoneTypeColumn;
+    private final int avatarColumn;
+
+
+    ContactChipProvider(Cursor cursor, Resources resources) {
+        this.cursor = cursor;
+        this.resources = resources;
+        this.count = cursor.getCount();
+        this.nameColumn = cursor.getColumnIndex(ContactsContract.PhoneLookup.DISPLAY_NAME);
+        this.phoneColumn = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER);
+        this.phoneTypeColumn = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE);
+        this.avatarColumn = cursor.getColumnIndex(ContactsContract.CommonDataKinds.Phone.PHOTO_THUMBNAIL_URI);
+    }
+
+    @Override
+    public int getChipCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized List<ContactChip> loadChips(int position, int count) {
+        List<ContactChip> chips = new ArrayList<>(count);
+        for (int i = position; i < position + count; i++) {
+            if (closed || !cursor.moveToPosition(i)) { break; }
+            chips.add(loadChip(i));
+        }
+        return chips;
+    }
+
+    @Override
+    public int findChipById(Object id) {
+        if (id instanceof Integer) {
+            int position = (Integer)id;
+            if (position >= 0 && position < count) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+        }
+    }
+
+    /**
+     * Makes a chip using the row the Cursor is at.
+     */
+    private ContactChip loadChip(int position) {
+        ContactChip chip = new ContactChip();
+        chip.setId(position);
+        chip.setName(cursor.getString(nameColumn));
+        chip.setPhone(cursor.getString(phoneColumn));
+        int phoneType = cursor.getInt(phoneTypeColumn);
+        chip.setPhoneType(ContactsContract.CommonDataKinds.Phone.getTypeLabel(resources, phoneType, "").toString());
+
+        String avatar = cursor.getString(avatarColumn);
+        if (avatar != null) {
+            chip.setAvatarUri(Uri.parse(avatar));
+        }
+        return chip;
+    }
+}
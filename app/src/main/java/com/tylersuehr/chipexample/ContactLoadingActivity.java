@@ -1,21 +1,16 @@
 package com.tylersuehr.chipexample;
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.ContactsContract;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
-import java.util.ArrayList;
-import java.util.List;
+import com.tylersuehr.chips.ChipProvider;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -30,46 +25,29 @@ import java.util.List;
  * Simply call {@link #loadContactsWithRuntimePermission()} to load contacts. Runtime
  * permissions must be granted for API 23+
  *
+ * The contacts are provided by a {@link ContactChipProvider}, which is closed once it's
+ * been replaced by a new one, or reset; so {@link #onContactsReset()} must stop using it.
+ *
  * @author Tyler Suehr
  * @version 1.0
  */
-abstract class ContactLoadingActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+abstract class ContactLoadingActivity extends AppCompatActivity
+        implements LoaderManager.LoaderCallbacks<ContactChipProvider> {
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        return new CursorLoader(this,
-                ContactsContract.CommonDataKinds.Phone.CONTENT_URI,// Content provider
-                null, null, null,
-                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME_PRIMARY + " ASC"); // OrderBy clause
+    public Loader<ContactChipProvider> onCreateLoader(int id, Bundle args) {
+        return new ContactChipLoader(this);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Collect all the contact information from the Cursor in a List
-        List<ContactChip> chips = new ArrayList<>(data.getCount());
-        for (int i = 0; i < data.getCount(); i++) {
-            data.moveToPosition(i);
-
-            ContactChip chip = new ContactChip();
-            chip.setId(i);
-            chip.setName(data.getString(data.getColumnIndex(ContactsContract.PhoneLookup.DISPLAY_NAME)));
-            chip.setPhone(data.getString(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER)));
-            int phoneType = data.getInt(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE));
-            chip.setPhoneType(ContactsContract.CommonDataKinds.Phone.getTypeLabel(getResources(), phoneType, "").toString());
-
-            String avatar = data.getString(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.PHOTO_THUMBNAIL_URI));
-            if (avatar != null) {
-                chip.setAvatarUri(Uri.parse(avatar));
-            }
-
-            chips.add(chip);
+    public void onLoadFinished(Loader<ContactChipProvider> loader, ContactChipProvider data) {
+        // Provide the contacts from the Cursor, only making chips for the rows that are loaded
+        if (data != null) {
+            onContactsAvailable(data);
         }
-
-        // Set the list of chips on the ChipsInput and normal adapter
-        onContactsAvailable(chips);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<ContactChipProvider> loader) {
         onContactsReset();
     }
 
@@ -118,14 +96,16 @@ abstract class ContactLoadingActivity extends AppCompatActivity implements Loade
     }
 
     /**
-     * Called when the current user's contacts are available as a list of {@link ContactChip}.
+     * Called when the current user's contacts are available from a {@link ChipProvider},
+     * which provides a {@link ContactChip} for each contact.
      *
-     * @param chips List of {@link ContactChip}
+     * @param provider {@link ChipProvider}
      */
-    protected abstract void onContactsAvailable(List<ContactChip> chips);
+    protected abstract void onContactsAvailable(ChipProvider provider);
 
     /**
-     * Called when the current user's contacts should be reset.
+     * Called when the current user's contacts should be reset, right before the
+     * provider of them is closed; it must not be used anymore.
      */
     protected abstract void onContactsReset();
 }
\ No newline at end of file
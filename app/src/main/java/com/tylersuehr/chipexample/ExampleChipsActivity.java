@@ -9,8 +9,12 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import com.tylersuehr.chips.Chip;
+import com.tylersuehr.chips.ChipProvider;
 import com.tylersuehr.chips.ChipsInputLayout;
-import java.util.List;
+import com.tylersuehr.chips.ListChipProvider;
+
+import java.util.Collections;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -57,15 +61,15 @@ public class ExampleChipsActivity extends ContactLoadingActivity
      * When we have contact chips available, let's make them filterable in our ChipsInputView!
      */
     @Override
-    protected void onContactsAvailable(List<ContactChip> chips) {
-        System.out.println("Number of contacts: " + chips.size());
-        this.chipsInput.setFilterableChipList(chips);
-
+    protected void onContactsAvailable(ChipProvider provider) {
+        System.out.println("Number of contacts: " + provider.getChipCount());
+        this.chipsInput.setFilterableChipProvider(provider);
     }
 
     @Override
     protected void onContactsReset() {
-
+        // Stop filtering the contacts, since their provider is about to be closed
+        this.chipsInput.setFilterableChipProvider(new ListChipProvider(Collections.<Chip>emptyList()));
     }
 
     @Override
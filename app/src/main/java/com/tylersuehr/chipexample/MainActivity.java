@@ -6,9 +6,12 @@ import android.support.v7.widget.Toolbar;
 import android.view.View;
 import android.widget.TextView;
 
+import com.tylersuehr.chips.Chip;
+import com.tylersuehr.chips.ChipProvider;
 import com.tylersuehr.chips.ChipsInputLayout;
+import com.tylersuehr.chips.ListChipProvider;
 
-import java.util.List;
+import java.util.Collections;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -57,13 +60,16 @@ public class MainActivity extends ContactLoadingActivity
      * When we have contact chips available, let's make them filterable in our ChipsInputView!
      */
     @Override
-    protected void onContactsAvailable(List<ContactChip> chips) {
-        System.out.println("Number of contacts: " + chips.size());
-        mChipsInput.setFilterableChipList(chips);
+    protected void onContactsAvailable(ChipProvider provider) {
+        System.out.println("Number of contacts: " + provider.getChipCount());
+        mChipsInput.setFilterableChipProvider(provider);
     }
 
     @Override
-    protected void onContactsReset() {}
+    protected void onContactsReset() {
+        // Stop filtering the contacts, since their provider is about to be closed
+        mChipsInput.setFilterableChipProvider(new ListChipProvider(Collections.<Chip>emptyList()));
+    }
 
     @Override
     public void onContactClicked(ContactChip chip) {}
@@ -0,0 +1,71 @@
+package com.tylersuehr.chips;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Instrumented tests for the tiles cached by {@link LetterTileProvider}, which need
+ * real bitmaps to draw them.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+@RunWith(AndroidJUnit4.class)
+public class LetterTileProviderTest {
+    private LetterTileProvider provider;
+
+    @Before
+    public void setUp() {
+        provider = LetterTileProvider.getInstance(InstrumentationRegistry.getTargetContext());
+        provider.clearCache();
+    }
+
+    @Test
+    public void getLetterTile_sameKeySameInstance() {
+        final Bitmap tile = provider.getLetterTile("Anna");
+        assertFalse(tile.isMutable());
+        assertSame(tile, provider.getLetterTile("Anna"));
+
+        final Bitmap circular = provider.getCircularLetterTile("Anna");
+        assertFalse(circular.isMutable());
+        assertSame(circular, provider.getCircularLetterTile("Anna"));
+        assertNotSame(tile, circular);
+    }
+
+    @Test
+    public void getCircularLetterTile_doesNotCacheSquareTile() {
+        final int misses = provider.getCacheMissCount();
+        provider.getCircularLetterTile("Zed");
+        assertEquals(misses + 1, provider.getCacheMissCount());
+
+        // The square tile is drawn on its own when asked for
+        provider.getLetterTile("Zed");
+        assertEquals(misses + 2, provider.getCacheMissCount());
+    }
+
+    @Test
+    public void setColors_clearsCache() {
+        final Bitmap tile = provider.getLetterTile("Anna");
+        provider.setColors(new String[] {"#59a2be"});
+        assertNotSame(tile, provider.getLetterTile("Anna"));
+    }
+
+    @Test
+    public void setTypeface_clearsCache() {
+        final Bitmap tile = provider.getLetterTile("Anna");
+        final Bitmap circular = provider.getCircularLetterTile("Anna");
+        provider.setTypeface(Typeface.DEFAULT);
+        assertNotSame(tile, provider.getLetterTile("Anna"));
+        assertNotSame(circular, provider.getCircularLetterTile("Anna"));
+    }
+}
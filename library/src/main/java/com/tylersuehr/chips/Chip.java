@@ -7,7 +7,6 @@ import android.support.annotation.Nullable;
 
 import java.text.Collator;
 import java.util.Comparator;
-import java.util.Locale;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -18,14 +17,22 @@ import java.util.Locale;
  * @version 1.0
  */
 public abstract class Chip {
-    /* Allows to compare text from any language(s) */
-    private static Collator sCollator;
-    /* Allows to compare Chip objects to each other */
-    private static Comparator<Chip> sComparator;
+    /* Allows to compare Chip objects to each other, by their titles */
+    private static final Comparator<Chip> sComparator = new Comparator<Chip>() {
+        @Override
+        public int compare(Chip c1, Chip c2) {
+            final Collator collator = ChipSortKey.getCollator();
+            return c1.getSortKey(collator).key.compareTo(c2.getSortKey(collator).key);
+        }
+    };
     /* Any king of extra data that might be used */
     private Object mTag;
     /* Specifies if this Chip can be filtered or not */
     private boolean mFilterable;
+    /* Normalized keys used to filter this Chip */
+    private ChipSearchKeys mSearchKeys;
+    /* Collation key used to sort this Chip */
+    private ChipSortKey mSortKey;
 
 
     @Nullable
@@ -44,21 +51,14 @@ public abstract class Chip {
     public abstract Drawable getAvatarDrawable();
 
     /**
-     * Lazy loads a comparator to compare chips to each other.
+     * Gets a comparator to compare chips to each other, which is thread-safe.
+     *
+     * Chips are compared by the collation keys of their titles in the default
+     * locale, which are cached by each chip.
+     *
      * @return {@link Comparator}
      */
     public static Comparator<Chip> getComparator() {
-        if (sComparator == null) {
-            sComparator = new Comparator<Chip>() {
-                @Override
-                public int compare(Chip c1, Chip c2) {
-                    if (sCollator == null) {
-                        sCollator = Collator.getInstance(Locale.getDefault());
-                    }
-                    return sCollator.compare(c1.getTitle(), c2.getTitle());
-                }
-            };
-        }
         return sComparator;
     }
 
@@ -77,4 +77,37 @@ public abstract class Chip {
     public boolean isFilterable() {
         return mFilterable;
     }
+
+    /**
+     * Lazy loads the normalized keys used to filter this chip, which are
+     * made again only if the title or subtitle has changed.
+     * @return {@link ChipSearchKeys}
+     */
+    ChipSearchKeys getSearchKeys() {
+        final String title = getTitle();
+        final String subtitle = getSubtitle();
+
+        ChipSearchKeys keys = mSearchKeys;
+        if (keys == null || !keys.isFor(title, subtitle)) {
+            keys = new ChipSearchKeys(title, subtitle);
+            mSearchKeys = keys;
+        }
+        return keys;
+    }
+
+    /**
+     * Lazy loads the collation key used to sort this chip, which is made
+     * again only if the title or the collator has changed.
+     * @return {@link ChipSortKey}
+     */
+    ChipSortKey getSortKey(Collator collator) {
+        final String title = getTitle();
+
+        ChipSortKey key = mSortKey;
+        if (key == null || !key.isFor(title, collator)) {
+            key = new ChipSortKey(title, collator);
+            mSortKey = key;
+        }
+        return key;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,284 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Validates many chips at once, off the main thread, using a
+ * {@link ChipsInputLayout.ChipValidator}; so that validators doing slow work, like looking
+ * up addresses in a database, don't block the UI for a long list of chips.
+ *
+ * The chips are validated in parallel by a few tasks on the given {@link Executor}, no more
+ * than the number of processors, which take the next chip to validate until there are none
+ * left; so the validator must be thread-safe. The last task to finish posts the valid and
+ * invalid chips to the main thread, using the main executor. A batch can stop at the first
+ * invalid chip instead, in which case chips that weren't validated yet are in neither list.
+ *
+ * Results are cached by the IDs of the chips, along with their titles and subtitles, so that
+ * a chip is only validated again if it changed. Chips without IDs are always validated. The
+ * least recently used results are dropped once there are too many. A batch of chips that
+ * won't be validated again, like pasted chips with new random IDs, can skip the cache so
+ * they don't push out the results worth keeping.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipBatchValidator {
+    /* Most results cached */
+    private static final int MAX_CACHED_RESULTS = 1000;
+    /* Number of progress reports for a batch */
+    private static final int PROGRESS_STEPS = 100;
+
+    /* States of each chip in a batch */
+    private static final byte UNVALIDATED = 0;
+    private static final byte VALID = 1;
+    private static final byte INVALID = 2;
+
+    /* Used to validate the chips */
+    private final ChipsInputLayout.ChipValidator mValidator;
+    private final Executor mExecutor;
+    private final int mParallelism;
+    /* Used to post the results to the main thread */
+    private final Executor mMainExecutor;
+    /* Results of chips with IDs, by their IDs, in order of access; guarded by itself */
+    private final Map<Object, CachedResult> mCache
+            = new LinkedHashMap<Object, CachedResult>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+
+    ChipBatchValidator(ChipsInputLayout.ChipValidator validator, Executor executor) {
+        this(validator, executor, new MainThreadExecutor());
+    }
+
+    ChipBatchValidator(ChipsInputLayout.ChipValidator validator, Executor executor,
+                       Executor mainExecutor) {
+        if (validator == null) {
+            throw new NullPointerException("Validator cannot be null!");
+        }
+        if (executor == null || mainExecutor == null) {
+            throw new NullPointerException("Executor cannot be null!");
+        }
+        mValidator = validator;
+        mExecutor = executor;
+        mMainExecutor = mainExecutor;
+        mParallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Validates the given chips on the executor, using the cached results; this can
+     * be called from any thread.
+     *
+     * @see #validate(List, boolean, boolean, Callback)
+     */
+    Batch validate(List<? extends Chip> chips, boolean stopOnInvalid, Callback callback) {
+        return validate(chips, stopOnInvalid, true, callback);
+    }
+
+    /**
+     * Validates the given chips on the executor; this can be called from any thread.
+     *
+     * @param chips List of {@link Chip}, which mustn't change until the batch finishes
+     * @param stopOnInvalid True if the batch should stop at the first invalid chip
+     * @param useCache True to use and store cached results, false to always validate
+     * @param callback {@link Callback} called on the main thread
+     * @return {@link Batch} that can be cancelled
+     */
+    Batch validate(List<? extends Chip> chips, boolean stopOnInvalid, boolean useCache,
+                   Callback callback) {
+        final Batch batch = new Batch(new ArrayList<Chip>(chips), stopOnInvalid,
+                useCache, callback);
+        if (batch.mChips.isEmpty()) {
+            batch.postFinished();
+            return batch;
+        }
+
+        final int tasks = Math.min(mParallelism, batch.mChips.size());
+        batch.mRemainingTasks.set(tasks);
+        for (int t = 0; t < tasks; t++) {
+            mExecutor.execute(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Validates the given chip on the calling thread, using its cached result if
+     * it hasn't changed.
+     *
+     * @param chip {@link Chip}
+     * @return True if the chip is valid
+     */
+    boolean validate(Chip chip) {
+        final Object id = chip.getId();
+        if (id == null) {
+            return mValidator.validate(chip);
+        }
+
+        final String title = chip.getTitle();
+        final String subtitle = chip.getSubtitle();
+        final CachedResult cached;
+        synchronized (mCache) {
+            cached = mCache.get(id);
+        }
+        if (cached != null && cached.isFor(title, subtitle)) {
+            return cached.valid;
+        }
+
+        // The validator may be slow, so the cache isn't locked while it runs
+        final boolean valid = mValidator.validate(chip);
+        synchronized (mCache) {
+            mCache.put(id, new CachedResult(title, subtitle, valid));
+        }
+        return valid;
+    }
+
+    /**
+     * Drops all the cached results, which is needed if the validator would now
+     * validate chips differently.
+     */
+    void clearCache() {
+        synchronized (mCache) {
+            mCache.clear();
+        }
+    }
+
+
+    /**
+     * A batch of chips being validated, which is run by every one of its tasks.
+     */
+    final class Batch implements Runnable {
+        private final List<Chip> mChips;
+        private final boolean mStopOnInvalid;
+        private final boolean mUseCache;
+        private final Callback mCallback;
+        private final byte[] mStates;
+        private final int mProgressInterval;
+
+        /* Index of the next chip to validate, and number of chips validated */
+        private final AtomicInteger mNext = new AtomicInteger();
+        private final AtomicInteger mValidated = new AtomicInteger();
+        private final AtomicInteger mRemainingTasks = new AtomicInteger();
+        private volatile boolean mFoundInvalid;
+        private volatile boolean mCancelled;
+
+
+        Batch(List<Chip> chips, boolean stopOnInvalid, boolean useCache, Callback callback) {
+            mChips = chips;
+            mStopOnInvalid = stopOnInvalid;
+            mUseCache = useCache;
+            mCallback = callback;
+            mStates = new byte[chips.size()];
+            mProgressInterval = Math.max(1, chips.size() / PROGRESS_STEPS);
+        }
+
+        /**
+         * Stops validating the chips, and drops the results of the batch.
+         */
+        void cancel() {
+            mCancelled = true;
+        }
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void run() {
+            final int count = mChips.size();
+            int i;
+            while (!mCancelled && !(mStopOnInvalid && mFoundInvalid)
+                    && (i = mNext.getAndIncrement()) < count) {
+                final Chip chip = mChips.get(i);
+                final boolean valid = mUseCache ? validate(chip) : mValidator.validate(chip);
+                mStates[i] = valid ? VALID : INVALID;
+                if (!valid) {
+                    mFoundInvalid = true;
+                }
+
+                final int validated = mValidated.incrementAndGet();
+                if (validated % mProgressInterval == 0 && validated < count) {
+                    postProgress(validated);
+                }
+            }
+
+            // The last task to finish collects the results of all of them; the
+            // states it reads were written before the other tasks counted down
+            if (mRemainingTasks.decrementAndGet() == 0 && !mCancelled) {
+                postFinished();
+            }
+        }
+
+        private void postProgress(final int validated) {
+            mMainExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) {
+                        mCallback.onValidationProgress(validated, mChips.size());
+                    }
+                }
+            });
+        }
+
+        private void postFinished() {
+            final List<Chip> valid = new ArrayList<>(mChips.size());
+            final List<Chip> invalid = new ArrayList<>();
+            for (int i = 0; i < mStates.length; i++) {
+                if (mStates[i] == VALID) {
+                    valid.add(mChips.get(i));
+                } else if (mStates[i] == INVALID) {
+                    invalid.add(mChips.get(i));
+                }
+            }
+
+            mMainExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) {
+                        mCallback.onValidationFinished(valid, invalid);
+                    }
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Stores the result of validating a chip, with the text it had then.
+     */
+    private static final class CachedResult {
+        final String title;
+        final String subtitle;
+        final boolean valid;
+
+        CachedResult(String title, String subtitle, boolean valid) {
+            this.title = title;
+            this.subtitle = subtitle;
+            this.valid = valid;
+        }
+
+        boolean isFor(String title, String subtitle) {
+            return equals(this.title, title) && equals(this.subtitle, subtitle);
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return (s1 == null) ? s2 == null : s1.equals(s2);
+        }
+    }
+
+
+    /**
+     * Callbacks for a batch of chips, on the main thread.
+     */
+    interface Callback {
+        void onValidationProgress(int validated, int count);
+        void onValidationFinished(List<Chip> valid, List<Chip> invalid);
+    }
+}
@@ -15,7 +15,10 @@ import java.util.List;
  *
  * Custom implementation of this should subclass {@link ObservableChipDataSource},
  * it provides the base functionality for observing changes to chips and simplifies
- * some of the implementation.
+ * some of the implementation. It also has the optional operations that the library
+ * uses when they're available, like adding many chips at once, finding chips by
+ * their IDs, batching changes, and searching with a {@link ChipSearchIndex}; these
+ * work, more slowly, for a data source that only implements this interface.
  *
  * The default implementation of this used by this library is {@link ListChipDataSource},
  * and it uses the {@link java.util.ArrayList} to store chips.
@@ -23,14 +26,24 @@ import java.util.List;
  * This requires three lists of chips:
  * (1) Selected chips: chips the user has explicitly selected.
  * (2) Filtered chips: chips that may have undergone some type of filtering.
+ *     These are replaced with the results of filtering, which doesn't notify
+ *     change observers.
  * (3) Original chips: original set list of filtered chips.
  *
  * Note: Selected chips will NEVER, or should never, appear in the other lists.
+ * The lists should only be modified using the methods of this, because the data
+ * source may keep other data structures about them (like {@link ListChipDataSource},
+ * which keeps track of which list each chip is in).
  *
  * @author Tyler Suehr
  * @version 1.0
  */
 public interface ChipDataSource {
+    /* Lists of chips that a ListChangeObserver can be told about */
+    int SELECTED = 0;
+    int FILTERED = 1;
+    int ORIGINAL = 2;
+
     List<Chip> getSelectedChips();
     List<Chip> getFilteredChips();
     List<Chip> getOriginalChips();
@@ -75,6 +88,29 @@ public interface ChipDataSource {
         void onChipDataSourceChanged();
     }
 
+    /**
+     * Defines an observer that wants to know exactly which chips have changed
+     * in this data source, so it can update only those.
+     *
+     * Unlike {@link ChangeObserver}, this observer is told which list changed
+     * ({@link #SELECTED}, {@link #FILTERED}, or {@link #ORIGINAL}), and the
+     * positions of the chips that were inserted, removed, or moved; in the order
+     * they happened.
+     *
+     * {@link #onChipDataSourceChanged()} is still called for changes that can't be
+     * described this way, like setting all the filterable chips.
+     *
+     * After the events of one change notification, like a batch of changes or chips
+     * added all at once, {@link #onChipChangesFinished()} is called; so that work needed
+     * for any of them, like filtering the chips again, can be done only once.
+     */
+    interface ListChangeObserver extends ChangeObserver {
+        void onChipsInserted(int list, int position, int count);
+        void onChipsRemoved(int list, int position, int count);
+        void onChipMoved(int list, int fromPosition, int toPosition);
+        void onChipChangesFinished();
+    }
+
     /**
      * Defines an observer that wants to observe changes to individual
      * chip selection events.
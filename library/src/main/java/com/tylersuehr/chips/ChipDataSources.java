@@ -0,0 +1,145 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Uses the optional operations of {@link ObservableChipDataSource} on any
+ * {@link ChipDataSource}; a data source that only implements the interface gets
+ * the simplest version of each, using the methods it does have.
+ *
+ * This way, the library works with custom data sources written before those
+ * operations were added, while the data sources of this library do each of them
+ * their own faster way.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipDataSources {
+    private ChipDataSources() {}
+
+    static void updateFilteredChips(ChipDataSource dataSource, List<? extends Chip> chips) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)dataSource).updateFilteredChips(chips);
+        } else {
+            replaceAll(dataSource.getFilteredChips(), chips);
+        }
+    }
+
+    static List<Chip> getOriginalChipsSnapshot(ChipDataSource dataSource) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getOriginalChipsSnapshot()
+                : Collections.unmodifiableList(new ArrayList<>(dataSource.getOriginalChips()));
+    }
+
+    static void addFilteredChips(ChipDataSource dataSource, Collection<? extends Chip> chips) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)dataSource).addFilteredChips(chips);
+        } else {
+            for (Chip chip : chips) {
+                dataSource.addFilteredChip(chip);
+            }
+        }
+    }
+
+    static void addSelectedChips(ChipDataSource dataSource, Collection<? extends Chip> chips) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)dataSource).addSelectedChips(chips);
+        } else {
+            for (Chip chip : chips) {
+                dataSource.addSelectedChip(chip);
+            }
+        }
+    }
+
+    static Chip getSelectedChipById(ChipDataSource dataSource, Object id) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getSelectedChipById(id)
+                : findById(dataSource.getSelectedChips(), id);
+    }
+
+    static Chip getFilteredChipById(ChipDataSource dataSource, Object id) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getFilteredChipById(id)
+                : findById(dataSource.getFilteredChips(), id);
+    }
+
+    static List<Chip> getSelectedChipsByIds(ChipDataSource dataSource, Collection<?> ids) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getSelectedChipsByIds(ids)
+                : findAllByIds(dataSource.getSelectedChips(), ids);
+    }
+
+    static List<Chip> getFilteredChipsByIds(ChipDataSource dataSource, Collection<?> ids) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getFilteredChipsByIds(ids)
+                : findAllByIds(dataSource.getFilteredChips(), ids);
+    }
+
+    static ChipSearchIndex getSearchIndex(ChipDataSource dataSource) {
+        return (dataSource instanceof ObservableChipDataSource)
+                ? ((ObservableChipDataSource)dataSource).getSearchIndex()
+                : null;
+    }
+
+    static void setSearchIndex(ChipDataSource dataSource, ChipSearchIndex searchIndex) {
+        if (!(dataSource instanceof ObservableChipDataSource)) {
+            throw new UnsupportedOperationException("Data source doesn't support search indexes!");
+        }
+        ((ObservableChipDataSource)dataSource).setSearchIndex(searchIndex);
+    }
+
+    static void beginBatch(ChipDataSource dataSource) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)dataSource).beginBatch();
+        }
+    }
+
+    static void endBatch(ChipDataSource dataSource) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)dataSource).endBatch();
+        }
+    }
+
+    /**
+     * Replaces the contents of the given list.
+     */
+    static void replaceAll(List<Chip> list, List<? extends Chip> chips) {
+        list.clear();
+        list.addAll(chips);
+    }
+
+    /**
+     * Scans the given chips for the one with the given ID.
+     */
+    static Chip findById(List<Chip> chips, Object id) {
+        for (Chip chip : chips) {
+            if (chip.getId() != null && chip.getId().equals(id)) {
+                return chip;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scans the given chips for those with the given IDs, in the order of the IDs,
+     * skipping any IDs that no chip has.
+     */
+    static List<Chip> findAllByIds(List<Chip> chips, Collection<?> ids) {
+        if (ids == null) {
+            throw new NullPointerException("IDs cannot be null!");
+        }
+
+        final List<Chip> found = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            final Chip chip = findById(chips, id);
+            if (chip != null) {
+                found.add(chip);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,244 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Finds the chips matching each constraint typed by the user, for the filter of
+ * {@link FilterableChipsAdapter}; only used on the worker thread of that filter.
+ *
+ * The hits of earlier constraints are kept, so that a constraint extending one of them
+ * only needs to look at its hits. If there's a limit, looking for hits stops once that
+ * many have been found, and looking for more of them later (load more) continues where
+ * it stopped.
+ *
+ * Chips are matched using the matcher option, if there is one; otherwise, they're
+ * found using the search index of the data source, if it has one.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipFinder {
+    /* Most constraints kept for refining the next query */
+    private static final int MAX_REFINEMENTS = 32;
+    /* Count of chips looked at between checks for cancellation */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    /* Earlier constraints and their hits, each one extending the one before it */
+    private final LinkedList<Refinement> mRefinements = new LinkedList<>();
+    /* Used when there's no matcher option, if the data source has no search index */
+    private final ChipMatcher mDefaultMatcher = new ContainsChipMatcher(false);
+    private final ChipMatcher mFoldingMatcher = new ContainsChipMatcher(true);
+    /* Matcher option the earlier constraints were matched with, and if accents were folded */
+    private ChipMatcher mRefinementMatcher;
+    private boolean mRefinementFoldAccents;
+
+    /* Matcher option, or null; and if accents are folded without one */
+    private ChipMatcher mMatcher;
+    private boolean mFoldAccents;
+    /* Search index of the data source, or null */
+    private ChipSearchIndex mSearchIndex;
+
+
+    /**
+     * Sets the matcher option, used to find chips from now on; the hits of earlier
+     * constraints are dropped if it's a different matcher, or accents are folded
+     * differently.
+     *
+     * @param matcher {@link ChipMatcher}, or null to match chips by default
+     * @param foldAccents True if accents are folded when matching by default
+     */
+    void setMatcher(ChipMatcher matcher, boolean foldAccents) {
+        mMatcher = matcher;
+        mFoldAccents = foldAccents;
+    }
+
+    /**
+     * Sets the search index of the data source.
+     *
+     * @param searchIndex {@link ChipSearchIndex}, or null
+     */
+    void setSearchIndex(ChipSearchIndex searchIndex) {
+        mSearchIndex = searchIndex;
+    }
+
+    /**
+     * Finds the chips matching the given constraint, by refining the hits of an
+     * earlier constraint that it extends, if possible.
+     *
+     * Since a chip matching the constraint also matches any prefix of it, only
+     * the hits of that prefix need to be looked at; unless the prefix stopped
+     * looking for hits at the limit, since chips after them could match too.
+     *
+     * If the limit is more than zero, this stops looking for hits once it has
+     * found that many; looking for more of them later continues where it stopped.
+     *
+     * @param constraint Text the user has typed
+     * @param chips Snapshot of the original chips
+     * @param version Data version of the snapshot; earlier hits are dropped when it changes
+     * @param limit Most hits to look for, or zero for all of them
+     * @param cancellation {@link Cancellation}
+     * @return {@link Refinement}, or null if cancelled
+     */
+    Refinement findChips(String constraint, List<Chip> chips, int version,
+                         int limit, Cancellation cancellation) {
+        final ChipMatcher matcher = mMatcher;
+        if (!mRefinements.isEmpty() && (mRefinements.getLast().version != version
+                || mRefinementMatcher != matcher || mRefinementFoldAccents != mFoldAccents)) {
+            mRefinements.clear();
+        }
+        mRefinementMatcher = matcher;
+        mRefinementFoldAccents = mFoldAccents;
+
+        // Drop any earlier constraints that aren't a prefix of this one (backspace)
+        while (!mRefinements.isEmpty()
+                && !constraint.startsWith(mRefinements.getLast().constraint)) {
+            mRefinements.removeLast();
+        }
+
+        final Refinement hits;
+        final Refinement last = mRefinements.isEmpty() ? null : mRefinements.getLast();
+        if (last != null && last.constraint.equals(constraint)) {
+            if (last.isComplete() || (limit > 0 && last.hits.size() >= limit)) {
+                return last;
+            }
+
+            // Look for more hits than before (load more)
+            hits = scanChips(constraint, compileQuery(constraint), version, last.source,
+                    last.resume, new ArrayList<>(last.hits), limit, cancellation);
+            if (hits != null) {
+                mRefinements.removeLast();
+            }
+        } else {
+            // Refine the hits of the longest prefix that found all of them,
+            // if the matcher allows it
+            Refinement prefix = null;
+            for (int i = mRefinements.size() - 1; i >= 0 && prefix == null; i--) {
+                final Refinement refinement = mRefinements.get(i);
+                if (refinement.isComplete() && (matcher == null
+                        || matcher.canRefine(refinement.constraint, constraint))) {
+                    prefix = refinement;
+                }
+            }
+            hits = (prefix == null)
+                    ? searchChips(constraint, chips, version, limit, cancellation)
+                    : refineChips(prefix.hits, constraint, version, limit, cancellation);
+        }
+        if (hits == null) {
+            return null; // Cancelled
+        }
+
+        mRefinements.addLast(hits);
+        if (mRefinements.size() > MAX_REFINEMENTS) {
+            mRefinements.removeFirst();
+        }
+        return hits;
+    }
+
+    private Refinement searchChips(String constraint, List<Chip> chips, int version,
+                                   int limit, Cancellation cancellation) {
+        final ChipSearchIndex index = mSearchIndex;
+        if (index != null && mMatcher == null) {
+            // Only the chips found by the search index need to be looked at
+            return new Refinement(constraint, index.search(constraint), version, null, -1);
+        }
+
+        // The query of a matcher may find the chips it could match using the index
+        final ChipMatcher.Query query = compileQuery(constraint);
+        List<Chip> candidates = null;
+        if (index != null && query instanceof ChipMatcher.IndexedQuery) {
+            candidates = ((ChipMatcher.IndexedQuery)query).findCandidates(index);
+        }
+        return scanChips(constraint, query, version, (candidates != null) ? candidates : chips,
+                0, new ArrayList<Chip>(), limit, cancellation);
+    }
+
+    /**
+     * Finds the chips in the given list that match the given constraint, or
+     * returns null if cancelled meanwhile.
+     */
+    private Refinement refineChips(List<Chip> chips, String constraint, int version,
+                                   int limit, Cancellation cancellation) {
+        // The search index can only find the chips matched by default
+        final ChipSearchIndex index = (mMatcher == null) ? mSearchIndex : null;
+        if (index != null) {
+            // Finding all the hits is cheap, so the limit is applied when publishing
+            return new Refinement(constraint, index.refine(chips, constraint), version, null, -1);
+        }
+        return scanChips(constraint, compileQuery(constraint), version, chips,
+                0, new ArrayList<Chip>(), limit, cancellation);
+    }
+
+    /**
+     * Adds the chips in the given list, from the given position, that match the given
+     * query to the given hits, until the limit is reached; or returns null if cancelled
+     * meanwhile.
+     */
+    private Refinement scanChips(String constraint, ChipMatcher.Query query, int version,
+                                 List<Chip> chips, int start, List<Chip> hits,
+                                 int limit, Cancellation cancellation) {
+        for (int i = start; i < chips.size(); i++) {
+            if ((i - start) % CANCEL_CHECK_INTERVAL == 0 && cancellation.isCancelled()) {
+                return null;
+            }
+            if (limit > 0 && hits.size() >= limit) {
+                return new Refinement(constraint, hits, version, chips, i);
+            }
+            // Chips of a provider that's gone are null
+            final Chip chip = chips.get(i);
+            if (chip != null && query.matches(chip)) {
+                hits.add(chip);
+            }
+        }
+        return new Refinement(constraint, hits, version, null, -1);
+    }
+
+    /**
+     * Compiles the given constraint using the matcher option, if there is one.
+     */
+    private ChipMatcher.Query compileQuery(String constraint) {
+        final ChipMatcher matcher = (mMatcher != null) ? mMatcher
+                : mFoldAccents ? mFoldingMatcher : mDefaultMatcher;
+        return matcher.compile(constraint);
+    }
+
+
+    /**
+     * Stores the hits of an earlier constraint, so it can be refined.
+     */
+    static final class Refinement {
+        final String constraint;
+        final List<Chip> hits;
+        final int version;
+        /* Chips that were being looked at, and where to continue, if the limit was reached */
+        final List<Chip> source;
+        final int resume;
+
+        Refinement(String constraint, List<Chip> hits, int version,
+                   List<Chip> source, int resume) {
+            this.constraint = constraint;
+            this.hits = hits;
+            this.version = version;
+            this.source = source;
+            this.resume = resume;
+        }
+
+        /**
+         * Checks if all the hits were found, instead of stopping at the limit.
+         */
+        boolean isComplete() {
+            return resume < 0;
+        }
+    }
+
+
+    /**
+     * Defines a check for whether finding the chips should stop, like when a
+     * newer constraint was requested meanwhile.
+     */
+    interface Cancellation {
+        boolean isCancelled();
+    }
+}
@@ -0,0 +1,66 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines the rule used to check if a chip matches the text the user has typed,
+ * when filtering the filterable chips.
+ *
+ * A query is compiled once for every constraint, so that anything the rule needs
+ * (like a normalized pattern) is made only once, and is then used to check each
+ * chip. Filtering happens on a worker thread; a query is only used by one thread,
+ * but the matcher itself must be thread-safe.
+ *
+ * If the data source has a {@link ChipSearchIndex}, a query that's also an
+ * {@link IndexedQuery} can use it to find the chips it could match, so that only those
+ * are checked; otherwise, every chip is checked.
+ *
+ * The default implementation of this used by this library is {@link ContainsChipMatcher}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface ChipMatcher {
+    /**
+     * Compiles a query for the given constraint.
+     *
+     * @param constraint Text the user has typed
+     * @return {@link Query}
+     */
+    Query compile(CharSequence constraint);
+
+    /**
+     * Checks if every chip matching the given constraint also matches the given
+     * prefix of it, so that only the hits of the prefix need to be looked at.
+     *
+     * @param prefix Earlier constraint, which the given constraint extends
+     * @param constraint Text the user has typed
+     * @return True if the hits of the prefix can be refined
+     */
+    boolean canRefine(CharSequence prefix, CharSequence constraint);
+
+
+    /**
+     * Defines a compiled query, used to check if chips match its constraint.
+     */
+    interface Query {
+        boolean matches(Chip chip);
+    }
+
+    /**
+     * Defines a compiled query that can find the chips it could match using a search
+     * index, like with {@link ChipSearchIndex#searchGrams(String, boolean, int, int)}.
+     */
+    interface IndexedQuery extends Query {
+        /**
+         * Finds every indexed chip that this could match, which are then checked using
+         * {@link #matches(Chip)}; it's fine to find chips that don't match.
+         *
+         * @param index {@link ChipSearchIndex}
+         * @return List of {@link Chip}, sorted by {@link Chip#getComparator()}; or null
+         *         if the index can't be used, so every chip is checked
+         */
+        List<Chip> findCandidates(ChipSearchIndex index);
+    }
+}
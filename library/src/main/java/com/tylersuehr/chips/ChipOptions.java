@@ -6,6 +6,7 @@ import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
+import java.util.regex.Pattern;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -39,6 +40,13 @@ final class ChipOptions {
     ColorStateList mFilterableListBackgroundColor;
     ColorStateList mFilterableListTextColor;
     float mFilterableListElevation;
+    boolean mRankFilteredChips;
+    boolean mBoostFrequentChips;
+    int mFilterMaxResults;
+    ChipMatcher mChipMatcher;
+    boolean mFoldAccents;
+    int mDebounceDelay;
+    int mDebounceMode;
 
     int mTextAppearanceIdRes;
 
@@ -49,6 +57,10 @@ final class ChipOptions {
     int mMaxRows;
     String mDelimiter;
     boolean mDelimiterRegex;
+    /* Compiled delimiter, or null if there's no delimiter */
+    Pattern mDelimiterPattern;
+    /* Shortest pasted text that's turned into chips off the main thread, or zero for none */
+    int mPasteThreshold;
 
     @NonNull
     ChipImageRenderer mImageRenderer;
@@ -84,6 +96,15 @@ final class ChipOptions {
         mFilterableListElevation = a.getDimension(R.styleable.ChipsInputLayout_filter_elevation, R.dimen.chip_open_elevation);
         mFilterableListBackgroundColor = a.getColorStateList(R.styleable.ChipsInputLayout_filter_backgroundColor);
         mFilterableListTextColor = a.getColorStateList(R.styleable.ChipsInputLayout_filter_textColor);
+        mRankFilteredChips = a.getBoolean(R.styleable.ChipsInputLayout_filter_rankResults, false);
+        mBoostFrequentChips = a.getBoolean(R.styleable.ChipsInputLayout_filter_boostFrequentChips, true);
+        mFilterMaxResults = a.getInt(R.styleable.ChipsInputLayout_filter_maxResults, 0);
+        mFoldAccents = a.getBoolean(R.styleable.ChipsInputLayout_filter_foldAccents, false);
+        mDebounceDelay = a.getInt(R.styleable.ChipsInputLayout_filter_debounceDelay, 0);
+        mDebounceMode = a.getInt(R.styleable.ChipsInputLayout_filter_debounceMode, ChipsInputLayout.DEBOUNCE_TRAILING);
+        if (a.getBoolean(R.styleable.ChipsInputLayout_filter_fuzzy, false)) {
+            mChipMatcher = new FuzzyChipMatcher(FuzzyChipMatcher.DEFAULT_MAX_EDITS, mFoldAccents);
+        }
 
         // Setup the properties for the ChipsInput itself
         mAllowCustomChips = a.getBoolean(R.styleable.ChipsInputLayout_allowCustomChips, true);
@@ -91,6 +112,8 @@ final class ChipOptions {
         mMaxRows = a.getInt(R.styleable.ChipsInputLayout_maxRows, 3);
         mDelimiter = a.getString(R.styleable.ChipsInputLayout_delimiter);
         mDelimiterRegex = a.getBoolean(R.styleable.ChipsInputLayout_delimiterRegex, false);
+        mDelimiterPattern = ChipTokenizer.compile(mDelimiter, mDelimiterRegex);
+        mPasteThreshold = a.getInt(R.styleable.ChipsInputLayout_pasteThreshold, 0);
 
         a.recycle();
 
@@ -0,0 +1,157 @@
+package com.tylersuehr.chips;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Turns a large block of pasted text into custom chips off the main thread, so that
+ * pasting thousands of addresses doesn't block the UI.
+ *
+ * The text is split into pieces by {@link ChipTokenizer} on the given {@link Executor},
+ * and a chip is made for each piece. The chips are then validated in parallel by a
+ * {@link ChipBatchValidator}, without its cache, which posts the valid and invalid
+ * chips to the main thread, where they can be added all at once.
+ *
+ * Only the latest paste is finished; pasting again, or cancelling, drops the results
+ * of any paste still in progress.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipPasteImporter {
+    /* Used to split pasted text when there's no delimiter option */
+    static final Pattern DEFAULT_DELIMITER = Pattern.compile("[,;\\r\\n]+");
+
+    /* Used to split the pasted text */
+    private final Executor mExecutor;
+    /* Used to post the results to the main thread */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /* Changed by every paste, so the results of older pastes are dropped */
+    private volatile int mGeneration;
+    /* Batch of pasted chips being validated, if any */
+    private volatile ChipBatchValidator.Batch mBatch;
+
+
+    ChipPasteImporter(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Splits the given text into custom chips and validates them, on the executor;
+     * this must be called on the main thread.
+     *
+     * @param text Pasted text
+     * @param delimiter {@link Pattern} used to split the text
+     * @param validator {@link ChipBatchValidator}, or null
+     * @param callback {@link Callback} called on the main thread
+     */
+    void paste(CharSequence text, final Pattern delimiter,
+               final ChipBatchValidator validator, final Callback callback) {
+        cancel();
+        final int generation = mGeneration;
+        final String pasted = text.toString();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> pieces = ChipTokenizer.tokenize(pasted, delimiter);
+                if (pieces.isEmpty()) {
+                    // Nothing to split, so the text should be pasted as is
+                    postNotSplit(pasted, generation, callback);
+                    return;
+                }
+
+                final List<Chip> chips = new ArrayList<>(pieces.size());
+                for (String piece : pieces) {
+                    chips.add(new DefaultCustomChip(piece));
+                }
+                if (validator == null) {
+                    postFinished(chips, generation, callback);
+                } else if (generation == mGeneration) {
+                    validate(chips, validator, generation, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the results of any paste still in progress.
+     */
+    void cancel() {
+        mGeneration++;
+        final ChipBatchValidator.Batch batch = mBatch;
+        if (batch != null) {
+            batch.cancel();
+        }
+    }
+
+    /**
+     * Validates the given chips in parallel, reporting to the callback while this
+     * is still the latest paste.
+     */
+    private void validate(List<Chip> chips, ChipBatchValidator validator,
+                          final int generation, final Callback callback) {
+        final ChipBatchValidator.Callback batchCallback = new ChipBatchValidator.Callback() {
+            @Override
+            public void onValidationProgress(int validated, int count) {
+                if (generation == mGeneration) {
+                    callback.onPasteProgress(validated, count);
+                }
+            }
+
+            @Override
+            public void onValidationFinished(List<Chip> valid, List<Chip> invalid) {
+                if (generation == mGeneration) {
+                    callback.onPasteFinished(valid, invalid);
+                }
+            }
+        };
+        // Pasted chips have new random IDs, so their results would never be used again
+        final ChipBatchValidator.Batch batch
+                = validator.validate(chips, false, false, batchCallback);
+
+        // The paste may have been cancelled before its batch was stored
+        mBatch = batch;
+        if (generation != mGeneration) {
+            batch.cancel();
+        }
+    }
+
+    private void postFinished(final List<Chip> chips, final int generation,
+                              final Callback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    callback.onPasteFinished(chips, Collections.<Chip>emptyList());
+                }
+            }
+        });
+    }
+
+    private void postNotSplit(final String text, final int generation, final Callback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    callback.onPasteNotSplit(text);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Callbacks for a paste, on the main thread.
+     */
+    interface Callback {
+        void onPasteProgress(int validated, int count);
+        void onPasteFinished(List<Chip> valid, List<Chip> invalid);
+        void onPasteNotSplit(String text);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines a random-access source of filterable chips, like the rows of a database
+ * query, which {@link PagedChipDataSource} loads one page at a time instead of
+ * keeping every chip in memory.
+ *
+ * The chips should be in the order they're displayed in, which is usually done by
+ * the query itself (like sorting by display name). Loading is never done by more
+ * than one thread at a time, but it may be done on a background thread.
+ *
+ * The in-memory implementation of this is {@link ListChipProvider}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface ChipProvider {
+    int getChipCount();
+
+    /**
+     * Loads the chips in the given range of positions; fewer chips can be returned if
+     * the source of the chips is gone, like a closed Cursor, and the positions that are
+     * missing have null chips until the provider is replaced.
+     *
+     * @param position Position of the first chip
+     * @param count Count of chips to load
+     * @return List of {@link Chip}
+     */
+    List<? extends Chip> loadChips(int position, int count);
+
+    /**
+     * Finds the position of the chip with the given ID.
+     *
+     * @param id ID of the chip
+     * @return Position of the chip, or -1 if no chip has the ID
+     */
+    int findChipById(Object id);
+}
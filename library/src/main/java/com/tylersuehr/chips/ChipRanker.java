@@ -0,0 +1,170 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Ranks the chips matching a constraint by how well they match it, instead of
+ * keeping them in alphabetical order.
+ *
+ * From best to worst, a chip matches if its title: equals the constraint, starts
+ * with it, has a word starting with it, or contains it; otherwise, if its subtitle
+ * contains it. Chips that match equally well are ranked by how often they've been
+ * selected, if frequency boosts are enabled, and then alphabetically.
+ *
+ * Only the best chips are kept, in a bounded heap, so the hits are never sorted;
+ * which matters for short constraints matching most of the chips.
+ *
+ * Selections are recorded on the main thread, while ranking happens on the worker
+ * thread of the filter.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipRanker {
+    /* Most chips kept by default, more than are ever displayed at once */
+    static final int DEFAULT_MAX_RESULTS = 50;
+
+    /* Ranks of the ways a chip can match, from worst to best */
+    static final int NO_MATCH = 0;
+    static final int SUBTITLE_MATCH = 1;
+    static final int SUBSTRING_MATCH = 2;
+    static final int WORD_PREFIX_MATCH = 3;
+    static final int PREFIX_MATCH = 4;
+    static final int EXACT_MATCH = 5;
+
+    /* Orders scored chips from worst to best, so the worst is at the head of the heap */
+    private static final Comparator<Scored> sComparator = new Comparator<Scored>() {
+        @Override
+        public int compare(Scored s1, Scored s2) {
+            if (s1.score != s2.score) {
+                return (s1.score < s2.score) ? -1 : 1;
+            }
+            // Alphabetically earlier chips are better
+            return Chip.getComparator().compare(s2.chip, s1.chip);
+        }
+    };
+
+    /* Number of times chips were selected, by their IDs (or themselves, without IDs) */
+    private final Map<Object, Integer> mFrequencies = new ConcurrentHashMap<>();
+    private volatile boolean mFrequencyBoost;
+
+
+    /**
+     * Ranks the given hits of the given constraint, keeping only the best ones.
+     *
+     * @param hits Chips matching the constraint
+     * @param constraint Text the user has typed
+     * @param maxResults Most chips to keep
+     * @return List of {@link Chip}, from best to worst
+     */
+    List<Chip> rank(List<Chip> hits, CharSequence constraint, int maxResults) {
+        final String query = ChipSearchKeys.normalizeQuery(constraint, false);
+        final String foldedQuery = ChipSearchKeys.normalizeQuery(constraint, true);
+        final boolean boost = mFrequencyBoost && !mFrequencies.isEmpty();
+
+        final PriorityQueue<Scored> heap = new PriorityQueue<>(
+                Math.max(1, Math.min(maxResults, hits.size())) + 1, sComparator);
+        for (int i = 0; i < hits.size(); i++) {
+            final Chip chip = hits.get(i);
+            long score = (long)score(chip.getSearchKeys(), query, foldedQuery) << 32;
+            if (boost) {
+                score |= getFrequency(chip);
+            }
+
+            // Only allocate for chips that make it into the heap
+            if (heap.size() < maxResults) {
+                heap.offer(new Scored(chip, score));
+            } else if (maxResults > 0 && isBetter(score, chip, heap.peek())) {
+                heap.poll();
+                heap.offer(new Scored(chip, score));
+            }
+        }
+
+        // Polling the heap gives the worst first
+        final Chip[] ranked = new Chip[heap.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = heap.poll().chip;
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
+    }
+
+    /**
+     * Records that the given chip was selected, which boosts its rank.
+     * @param chip {@link Chip}
+     */
+    void recordSelection(Chip chip) {
+        final Object key = getKey(chip);
+        final Integer frequency = mFrequencies.get(key);
+        mFrequencies.put(key, (frequency == null) ? 1 : frequency + 1);
+    }
+
+    void setFrequencyBoost(boolean enabled) {
+        mFrequencyBoost = enabled;
+    }
+
+    /**
+     * Scores how well the given keys match the given query, which is one of the
+     * match ranks; accents are only folded if the chip doesn't match otherwise.
+     */
+    static int score(ChipSearchKeys keys, String query, String foldedQuery) {
+        final int score = score(keys.titleKey, keys.subtitleKey, query);
+        return (score != NO_MATCH) ? score
+                : score(keys.foldedTitleKey, keys.foldedSubtitleKey, foldedQuery);
+    }
+
+    private static int score(String title, String subtitle, String query) {
+        int index = title.indexOf(query);
+        if (index == 0) {
+            return (title.length() == query.length()) ? EXACT_MATCH : PREFIX_MATCH;
+        }
+        if (index > 0) {
+            // Look for a match at the start of a word
+            while (index > 0) {
+                if (!Character.isLetterOrDigit(title.charAt(index - 1))) {
+                    return WORD_PREFIX_MATCH;
+                }
+                index = title.indexOf(query, index + 1);
+            }
+            return SUBSTRING_MATCH;
+        }
+        return subtitle.contains(query) ? SUBTITLE_MATCH : NO_MATCH;
+    }
+
+    private static boolean isBetter(long score, Chip chip, Scored worst) {
+        if (score != worst.score) {
+            return score > worst.score;
+        }
+        return Chip.getComparator().compare(chip, worst.chip) < 0;
+    }
+
+    private int getFrequency(Chip chip) {
+        final Integer frequency = mFrequencies.get(getKey(chip));
+        return (frequency == null) ? 0 : frequency;
+    }
+
+    private static Object getKey(Chip chip) {
+        final Object id = chip.getId();
+        return (id != null) ? id : chip;
+    }
+
+
+    /**
+     * Stores a chip with its score, while it's in the heap.
+     */
+    private static final class Scored {
+        final Chip chip;
+        final long score;
+
+        Scored(Chip chip, long score) {
+            this.chip = chip;
+            this.score = score;
+        }
+    }
+}
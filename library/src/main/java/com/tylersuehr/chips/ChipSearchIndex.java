@@ -0,0 +1,79 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines a search index over the filterable chips of a {@link ChipDataSource}.
+ *
+ * The index should be built once when the filterable chips are set, and then kept
+ * up-to-date as chips are added, taken, or replaced, so that filtering does not have
+ * to scan every filterable chip on each keystroke.
+ *
+ * Filtering happens on a worker thread, while the data source is modified on the main
+ * thread; so implementations of this must be thread-safe.
+ *
+ * The default implementation of this used by this library is {@link TrigramChipSearchIndex}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface ChipSearchIndex {
+    /**
+     * Rebuilds the index with the given chips.
+     * @param chips List of {@link Chip}, sorted by {@link Chip#getComparator()}
+     */
+    void setChips(List<? extends Chip> chips);
+
+    void addChip(Chip chip);
+    void removeChip(Chip chip);
+    void clear();
+
+    /**
+     * Finds all the indexed chips that match the given constraint.
+     *
+     * @param constraint Text the user has typed
+     * @return List of {@link Chip}, sorted by {@link Chip#getComparator()}
+     */
+    List<Chip> search(CharSequence constraint);
+
+    /**
+     * Finds the chips in the given list that match the given constraint.
+     *
+     * This is used to refine the hits of an earlier constraint, which the given
+     * constraint extends, without searching all the indexed chips again.
+     *
+     * @param chips List of {@link Chip} to look at
+     * @param constraint Text the user has typed
+     * @return List of {@link Chip}, in the same order as the given list
+     */
+    List<Chip> refine(List<Chip> chips, CharSequence constraint);
+
+    /**
+     * Finds the indexed chips that share at least the given count of grams with the
+     * given query; where, for each position of the query, the gram starting there is
+     * shared if it's in the normalized title or subtitle of a chip.
+     *
+     * This is used by a {@link ChipMatcher.IndexedQuery} to find the chips that its
+     * query could match, like with a few edits, since each edit changes only a few
+     * of the grams; those chips are then checked by the query.
+     *
+     * @param query Query normalized using {@link ChipTextNormalizer#normalizeQuery(CharSequence, boolean)}
+     * @param folded True if the accents of the query were folded
+     * @param gramLength Length of the grams
+     * @param minShared Least count of grams shared, which must be positive
+     * @return List of {@link Chip}, sorted by {@link Chip#getComparator()}; or null if this
+     *         can't find them, like if the grams are too long or the keys of the chips
+     *         are normalized differently
+     */
+    List<Chip> searchGrams(String query, boolean folded, int gramLength, int minShared);
+
+    /**
+     * Checks if the given chip matches the given constraint.
+     *
+     * @param chip {@link Chip}
+     * @param constraint Text the user has typed
+     * @return True if the chip matches
+     */
+    boolean matches(Chip chip, CharSequence constraint);
+}
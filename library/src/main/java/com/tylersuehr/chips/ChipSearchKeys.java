@@ -0,0 +1,64 @@
+package com.tylersuehr.chips;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Stores the normalized keys used to filter a chip, so that filtering doesn't need
+ * to allocate new strings for every chip on every keystroke.
+ *
+ * The title key is the lower-cased title, and the subtitle key is the lower-cased
+ * subtitle without any whitespace. Both are also kept with their accents folded (so
+ * "José" has the key "jose"); when there's nothing to fold, those are the same strings.
+ * Case and accents are folded by {@link ChipTextNormalizer}, regardless of the locale.
+ *
+ * These are cached by {@link Chip#getSearchKeys()}, and are made again whenever the
+ * title or subtitle of the chip changes.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipSearchKeys {
+    /* Title and subtitle these keys were made from */
+    private final String mTitle;
+    private final String mSubtitle;
+
+    final String titleKey;
+    final String subtitleKey;
+    final String foldedTitleKey;
+    final String foldedSubtitleKey;
+
+
+    ChipSearchKeys(String title, String subtitle) {
+        mTitle = title;
+        mSubtitle = subtitle;
+        titleKey = ChipTextNormalizer.normalize(title, false, false);
+        subtitleKey = (subtitle != null) ? ChipTextNormalizer.normalize(subtitle, false, true) : "";
+        foldedTitleKey = ChipTextNormalizer.normalize(titleKey, true, false);
+        foldedSubtitleKey = ChipTextNormalizer.normalize(subtitleKey, true, false);
+    }
+
+    /**
+     * Checks if these keys were made from the given title and subtitle.
+     *
+     * Most chips return the same strings every time, so the references are
+     * compared before the contents.
+     */
+    boolean isFor(String title, String subtitle) {
+        return (title == mTitle || (title != null && title.equals(mTitle)))
+                && (subtitle == mSubtitle || (subtitle != null && subtitle.equals(mSubtitle)));
+    }
+
+    /**
+     * Checks if the title or subtitle key contains the given query, which
+     * should've been normalized using {@link #normalizeQuery(CharSequence, boolean)}.
+     */
+    boolean matches(String query, boolean folded) {
+        return folded
+                ? foldedTitleKey.contains(query) || foldedSubtitleKey.contains(query)
+                : titleKey.contains(query) || subtitleKey.contains(query);
+    }
+
+    static String normalizeQuery(CharSequence constraint, boolean folded) {
+        return ChipTextNormalizer.normalizeQuery(constraint, folded);
+    }
+}
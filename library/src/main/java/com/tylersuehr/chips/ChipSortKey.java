@@ -0,0 +1,87 @@
+package com.tylersuehr.chips;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Stores the collation key used to sort a chip by its title, so that sorting
+ * doesn't need to decompose both titles on every comparison.
+ *
+ * Keys are made using the collator of the default locale at that time; if the
+ * default locale changes, a new collator is made and keys made by the old one
+ * are made again the next time they're needed.
+ *
+ * These are cached by {@link Chip#getSortKey(Collator)}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipSortKey {
+    /* Collator of the default locale, and the locale it was made for */
+    private static volatile LocaleCollator sLocaleCollator;
+
+    /* Title and collator this key was made from */
+    private final String mTitle;
+    private final Collator mCollator;
+
+    final CollationKey key;
+
+
+    ChipSortKey(String title, Collator collator) {
+        mTitle = title;
+        mCollator = collator;
+
+        // Collators aren't thread-safe, but the keys they make are
+        synchronized (collator) {
+            key = collator.getCollationKey(title);
+        }
+    }
+
+    /**
+     * Checks if this key was made from the given title by the given collator.
+     *
+     * Most chips return the same title every time, so the references are
+     * compared before the contents.
+     */
+    boolean isFor(String title, Collator collator) {
+        return collator == mCollator
+                && (title == mTitle || (title != null && title.equals(mTitle)));
+    }
+
+    /**
+     * Gets the collator of the default locale, making a new one only if
+     * the default locale has changed.
+     * @return {@link Collator}
+     */
+    static Collator getCollator() {
+        final Locale locale = Locale.getDefault();
+
+        LocaleCollator current = sLocaleCollator;
+        if (current == null || !current.locale.equals(locale)) {
+            synchronized (ChipSortKey.class) {
+                current = sLocaleCollator;
+                if (current == null || !current.locale.equals(locale)) {
+                    current = new LocaleCollator(locale);
+                    sLocaleCollator = current;
+                }
+            }
+        }
+        return current.collator;
+    }
+
+
+    /**
+     * Pairs a collator with the locale it was made for.
+     */
+    private static final class LocaleCollator {
+        final Locale locale;
+        final Collator collator;
+
+        LocaleCollator(Locale locale) {
+            this.locale = locale;
+            this.collator = Collator.getInstance(locale);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.tylersuehr.chips;
+import android.os.AsyncTask;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Loads filterable chips into a {@link ChipDataSource} a chunk at a time, so that the
+ * chips already loaded can be filtered while the rest are still being loaded.
+ *
+ * Chips are pulled from an {@link Iterator}, or offered by a producer, on a background
+ * {@link Executor}, where the keys used to filter and sort them are made. Each chunk is
+ * then added to the data source on the main thread, which lets the filterable adapter
+ * filter the chips again with the latest constraint.
+ *
+ * The first chunk is small, so that chips are available quickly, and every chunk after it
+ * is twice as large, up to {@link #MAX_CHUNK_SIZE}; fewer, larger chunks take less time to
+ * merge into the sorted list of chips. The next chunk isn't pulled from the iterator until
+ * the one before it has been added, so a slow main thread slows down the loading too.
+ *
+ * Each chunk is added using {@link ObservableChipDataSource#addFilteredChips(Collection)},
+ * or one chip at a time if the data source only implements {@link ChipDataSource}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipStreamLoader {
+    /* Sizes of the first chunk, and of the largest chunk */
+    public static final int FIRST_CHUNK_SIZE = 100;
+    public static final int MAX_CHUNK_SIZE = 2000;
+
+    /* Data source that the chips are loaded into */
+    private final ChipDataSource mDataSource;
+    /* Used to make the keys of the chips, and to pull them from iterators */
+    private final Executor mExecutor;
+    /* Used to add the chips to the data source on the main thread */
+    private final Executor mMainExecutor;
+
+    /* Changed by cancelling, so that chunks of an older load are dropped */
+    private volatile int mGeneration;
+    /* Number of chips loaded since the last load began, changed on the main thread */
+    private int mLoadedCount;
+    private OnChipsStreamedListener mListener;
+
+
+    /* Construct using the thread pool of AsyncTask to make the keys of the chips */
+    public ChipStreamLoader(ChipDataSource dataSource) {
+        this(dataSource, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public ChipStreamLoader(ChipDataSource dataSource, Executor executor) {
+        this(dataSource, executor, new MainThreadExecutor());
+    }
+
+    ChipStreamLoader(ChipDataSource dataSource, Executor executor, Executor mainExecutor) {
+        if (dataSource == null) {
+            throw new NullPointerException("Data source cannot be null!");
+        }
+        if (executor == null || mainExecutor == null) {
+            throw new NullPointerException("Executor cannot be null!");
+        }
+        mDataSource = dataSource;
+        mExecutor = executor;
+        mMainExecutor = mainExecutor;
+    }
+
+    /**
+     * Loads all the chips of the given iterator, which is only used on the executor,
+     * cancelling any chips still being loaded.
+     *
+     * @param chips {@link Iterator}
+     */
+    public void load(final Iterator<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        cancel();
+        mExecutor.execute(new IteratorChunk(chips, mGeneration, FIRST_CHUNK_SIZE));
+    }
+
+    /**
+     * Loads the given chips, in addition to any chips still being loaded, which can be
+     * called from any thread by a producer of the chips.
+     *
+     * @param chips Collection of {@link Chip}
+     */
+    public void offer(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        final List<Chip> chunk = new ArrayList<>(chips);
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) { return; }
+                prepare(chunk);
+                post(chunk, generation, false);
+            }
+        });
+    }
+
+    /**
+     * Stops loading chips, dropping any chunks that haven't been added yet. Chips that
+     * were already added stay in the data source.
+     */
+    public void cancel() {
+        mGeneration++;
+        mLoadedCount = 0;
+    }
+
+    public void setOnChipsStreamedListener(OnChipsStreamedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Makes the keys used to filter and sort the given chips, so that the main
+     * thread doesn't have to.
+     */
+    private static void prepare(List<Chip> chunk) {
+        for (Chip chip : chunk) {
+            chip.setFilterable(true);
+            chip.getSearchKeys();
+        }
+        Collections.sort(chunk, Chip.getComparator());
+    }
+
+    /**
+     * Adds the given chunk to the data source on the main thread, unless it
+     * belongs to a load that was cancelled.
+     */
+    private void post(final List<Chip> chunk, final int generation,
+                      final boolean finished) {
+        mMainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) { return; }
+                if (!chunk.isEmpty()) {
+                    ChipDataSources.addFilteredChips(mDataSource, chunk);
+                }
+                mLoadedCount += chunk.size();
+                if (mListener != null) {
+                    mListener.onChipsStreamed(mLoadedCount, finished);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Pulls a chunk of chips from an iterator, and pulls the next chunk
+     * once this one has been added to the data source.
+     */
+    private final class IteratorChunk implements Runnable {
+        private final Iterator<? extends Chip> mChips;
+        private final int mGeneration;
+        private final int mSize;
+
+
+        IteratorChunk(Iterator<? extends Chip> chips, int generation, int size) {
+            mChips = chips;
+            mGeneration = generation;
+            mSize = size;
+        }
+
+        @Override
+        public void run() {
+            if (mGeneration != ChipStreamLoader.this.mGeneration) { return; }
+
+            final List<Chip> chunk = new ArrayList<>(mSize);
+            while (chunk.size() < mSize && mChips.hasNext()) {
+                chunk.add(mChips.next());
+            }
+            final boolean finished = !mChips.hasNext();
+            prepare(chunk);
+            post(chunk, mGeneration, finished);
+
+            if (!finished) {
+                // Pull the next chunk only after this one has been added
+                final int next = Math.min(mSize * 2, MAX_CHUNK_SIZE);
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mExecutor.execute(new IteratorChunk(mChips, mGeneration, next));
+                    }
+                });
+            }
+        }
+    }
+
+
+    /**
+     * Defines a listener for chips being loaded, on the main thread.
+     */
+    public interface OnChipsStreamedListener {
+        void onChipsStreamed(int count, boolean finished);
+    }
+}
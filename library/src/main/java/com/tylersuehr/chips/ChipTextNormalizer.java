@@ -0,0 +1,193 @@
+package com.tylersuehr.chips;
+import java.text.Normalizer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Normalizes text used to filter chips, by folding its case and, optionally, its
+ * accents (so "José" becomes "jose"); the same way for the keys of the chips, when
+ * they're indexed, and for the text the user has typed.
+ *
+ * Case is folded without using the default locale, unlike {@link String#toLowerCase()};
+ * so that, in a Turkish locale, "I" still becomes "i" and "İ" becomes "i" too, instead
+ * of a dotless "ı" or two characters. Every character is folded into one character,
+ * or removed (combining accents), so the text never gets longer.
+ *
+ * Characters up to the end of Latin Extended-B are folded using tables that are made
+ * once; others use {@link Character#toLowerCase(char)}, and have their accents folded
+ * using their NFD decomposition (like "ệ" and "ά"). Those folds are kept in pages of
+ * 256 characters, each made the first time one of its characters is folded, so only
+ * the scripts actually used are decomposed, once. Text that's already normalized is
+ * returned as is, and other text is folded into a buffer kept by each thread, so that
+ * only the normalized string is allocated.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipTextNormalizer {
+    /* Characters below this are folded using the tables */
+    private static final int TABLE_SIZE = 0x250;
+    /* Folded case, and folded case and accents, of the characters in the tables */
+    private static final char[] sLowerTable = new char[TABLE_SIZE];
+    private static final char[] sFoldedTable = new char[TABLE_SIZE];
+    /* Letters with strokes or other marks that don't decompose, and their base letters */
+    private static final String UNDECOMPOSED = "ıđħłøƀƶŧ";
+    private static final String UNDECOMPOSED_BASES = "idhlobzt";
+    /* Folded accents of the other characters, in pages made when first needed */
+    private static final int PAGE_SHIFT = 8;
+    private static final AtomicReferenceArray<char[]> sFoldedPages =
+            new AtomicReferenceArray<>(1 << (16 - PAGE_SHIFT));
+
+    /* Buffer used to fold text, kept by each thread */
+    private static final ThreadLocal<char[]> sBuffer = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[64];
+        }
+    };
+
+    static {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            final char lower = Character.toLowerCase((char)c);
+            sLowerTable[c] = lower;
+            sFoldedTable[c] = foldAccent(lower);
+        }
+    }
+
+
+    private ChipTextNormalizer() {}
+
+    /**
+     * Normalizes the given text, returning the same string if nothing changed.
+     *
+     * @param text Text to normalize
+     * @param foldAccents True if accents should be folded
+     * @param stripWhitespace True if whitespace should be removed
+     * @return Normalized text
+     */
+    static String normalize(CharSequence text, boolean foldAccents, boolean stripWhitespace) {
+        return normalize(text, 0, text.length(), foldAccents, stripWhitespace);
+    }
+
+    /**
+     * Normalizes the given text the user has typed, without any leading or
+     * trailing whitespace.
+     *
+     * @param constraint Text the user has typed
+     * @param foldAccents True if accents should be folded
+     * @return Normalized text
+     */
+    static String normalizeQuery(CharSequence constraint, boolean foldAccents) {
+        int start = 0;
+        int end = constraint.length();
+        while (start < end && constraint.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && constraint.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return normalize(constraint, start, end, foldAccents, false);
+    }
+
+    /**
+     * Folds the case, and optionally the accents, of the given character.
+     */
+    static char fold(char c, boolean foldAccents) {
+        if (c < TABLE_SIZE) {
+            return foldAccents ? sFoldedTable[c] : sLowerTable[c];
+        }
+
+        final char lower = Character.toLowerCase(c);
+        if (!foldAccents) {
+            return lower;
+        }
+        return (lower < TABLE_SIZE) ? sFoldedTable[lower] : getFoldedPage(lower)[lower & 0xFF];
+    }
+
+    /**
+     * Gets the page of folded accents containing the given character, making it if
+     * needed; two threads may make the same page, which is harmless.
+     */
+    private static char[] getFoldedPage(char c) {
+        final int index = c >>> PAGE_SHIFT;
+        char[] page = sFoldedPages.get(index);
+        if (page == null) {
+            page = new char[1 << PAGE_SHIFT];
+            final int first = index << PAGE_SHIFT;
+            for (int i = 0; i < page.length; i++) {
+                page[i] = foldAccent((char)(first + i));
+            }
+            sFoldedPages.set(index, page);
+        }
+        return page;
+    }
+
+    /**
+     * Checks if the given character is removed when normalizing, which are combining
+     * accents if accents are folded, and whitespace if it's stripped.
+     */
+    private static boolean isRemoved(char c, boolean foldAccents, boolean stripWhitespace) {
+        return (stripWhitespace && Character.isWhitespace(c)) || (foldAccents
+                && c >= TABLE_SIZE && Character.getType(c) == Character.NON_SPACING_MARK);
+    }
+
+    private static String normalize(CharSequence text, int start, int end,
+                                     boolean foldAccents, boolean stripWhitespace) {
+        // Find the first character that changes, if any
+        int i = start;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (fold(c, foldAccents) != c || isRemoved(c, foldAccents, stripWhitespace)) {
+                break;
+            }
+            i++;
+        }
+        if (i == end) {
+            return (start == 0 && end == text.length() && text instanceof String)
+                    ? (String)text : text.subSequence(start, end).toString();
+        }
+
+        char[] buffer = sBuffer.get();
+        if (buffer.length < end - start) {
+            buffer = new char[Math.max(end - start, buffer.length * 2)];
+            sBuffer.set(buffer);
+        }
+
+        // Copy the unchanged characters, then fold the rest
+        int length = 0;
+        for (int j = start; j < i; j++) {
+            buffer[length++] = text.charAt(j);
+        }
+        for (int j = i; j < end; j++) {
+            final char c = text.charAt(j);
+            if (!isRemoved(c, foldAccents, stripWhitespace)) {
+                buffer[length++] = fold(c, foldAccents);
+            }
+        }
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Gets the base letter of the given character, without its accents; this is
+     * only used to make the tables and pages.
+     */
+    private static char foldAccent(char c) {
+        final int undecomposed = UNDECOMPOSED.indexOf(c);
+        if (undecomposed >= 0) {
+            return UNDECOMPOSED_BASES.charAt(undecomposed);
+        }
+        if (c < 0x80) {
+            return c;
+        }
+
+        // Use the base letter if it decomposes into one, followed by accents
+        final String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        for (int i = 1; i < decomposed.length(); i++) {
+            if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK) {
+                return c;
+            }
+        }
+        return Character.toLowerCase(decomposed.charAt(0));
+    }
+}
@@ -0,0 +1,73 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Splits text the user has typed, or pasted, into the texts of new chips using the
+ * delimiter option, which is compiled once when it's set.
+ *
+ * The text is split in one pass, without copying it first, so that a large pasted
+ * block (like thousands of comma-separated addresses) can be turned into a batch of
+ * chips at once. Every piece is trimmed, and empty pieces are skipped.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipTokenizer {
+    private ChipTokenizer() {}
+
+    /**
+     * Compiles the given delimiter.
+     *
+     * @param delimiter Delimiter, or null
+     * @param regex True if the delimiter is a regular expression
+     * @return {@link Pattern}, or null if there's no delimiter
+     */
+    static Pattern compile(String delimiter, boolean regex) {
+        if (delimiter == null || delimiter.length() == 0) {
+            return null;
+        }
+        return Pattern.compile(delimiter, regex ? 0 : Pattern.LITERAL);
+    }
+
+    /**
+     * Splits the given text into pieces using the given delimiter, if the text
+     * contains it at all.
+     *
+     * @param text Text to split
+     * @param delimiter {@link Pattern} of the delimiter
+     * @return List of pieces, empty if the text doesn't contain the delimiter
+     */
+    static List<String> tokenize(CharSequence text, Pattern delimiter) {
+        final Matcher matcher = delimiter.matcher(text);
+        if (!matcher.find()) {
+            return Collections.emptyList();
+        }
+
+        final List<String> tokens = new ArrayList<>();
+        int start = 0;
+        do {
+            addToken(tokens, text, start, matcher.start());
+            start = matcher.end();
+        } while (matcher.find());
+        addToken(tokens, text, start, text.length());
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end) {
+            tokens.add(text.subSequence(start, end).toString());
+        }
+    }
+}
@@ -5,6 +5,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.RelativeLayout;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -17,18 +19,21 @@ import android.widget.RelativeLayout;
  * (2) Allow user to remove any chip by pressing delete on an empty input.
  * (3) Allow the user to see chip details, if the options permit it.
  *
- * This observes changes to {@link ChipDataSource} to update the UI accordingly.
+ * This observes changes to {@link ChipDataSource} to update the UI accordingly; only
+ * the chip views that were inserted or removed, and the EditText, get updated.
  *
  * @author Tyler Suehr
  * @version 1.0
  */
 class ChipsAdapter
         extends RecyclerView.Adapter<RecyclerView.ViewHolder>
-        implements ChipsEditText.OnKeyboardListener, ChipDataSource.ChangeObserver {
+        implements ChipsEditText.OnKeyboardListener, ChipDataSource.ListChangeObserver {
     private static final int CHIP  = 0;
     private static final int INPUT = 1;
+    /* Payload of rebinding only the EditText, so its view holder is kept */
+    private static final Object PAYLOAD_INPUT = new Object();
 
-    private final ChipDataSource mDataSource;
+    private ChipDataSource mDataSource;
     private final ChipOptions mOptions;
     private final ChipsEditText mEditText;
 
@@ -45,6 +50,15 @@ class ChipsAdapter
         mDataSource.addChangedObserver(this);
     }
 
+    /**
+     * Changes the data source of the chips, which must already have this
+     * adapter as a change observer.
+     */
+    void changeDataSource(ChipDataSource dataSource) {
+        mDataSource = dataSource;
+        notifyDataSetChanged();
+    }
+
     @Override
     public int getItemViewType(int position) {
         return position < mDataSource
@@ -71,12 +85,17 @@ class ChipsAdapter
             final ChipHolder ch = (ChipHolder)holder;
             ch.chipView.inflateFromChip(mDataSource.getSelectedChip(position));
         } else { // EditText
-            if (mDataSource.getSelectedChips().size() == 0) {
-                mEditText.setHint(mOptions.mHint);
-            }
+            bindEditText();
+        }
+    }
 
-            // Resize the edit text to fit in recycler
-            autoFitEditText();
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position,
+                                 List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_INPUT) && getItemViewType(position) == INPUT) {
+            bindEditText();
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
         }
     }
 
@@ -97,6 +116,25 @@ class ChipsAdapter
         mDataSource.addSelectedChip(new DefaultCustomChip(text));
     }
 
+    /**
+     * Called when text containing the delimiter was typed or pasted, which
+     * was split into the given texts.
+     */
+    @Override
+    public void onKeyboardActionDone(List<String> texts) {
+        if (texts.isEmpty() || !mOptions.mAllowCustomChips) { return; }
+
+        // Clear the input before taking chips so we don't need to update UI twice
+        mEditText.setText("");
+
+        // Add all the chips with one notification, instead of one per chip
+        final List<Chip> chips = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            chips.add(new DefaultCustomChip(text));
+        }
+        ChipDataSources.addSelectedChips(mDataSource, chips);
+    }
+
     /**
      * Called when the backspace (KEYCODE_DEL) is pressed on a software or
      * physical keyboard.
@@ -116,6 +154,53 @@ class ChipsAdapter
         notifyDataSetChanged();
     }
 
+    @Override
+    public void onChipsInserted(int list, int position, int count) {
+        if (list == ChipDataSource.SELECTED) {
+            notifyItemRangeInserted(position, count);
+            notifyEditTextChanged();
+        }
+    }
+
+    @Override
+    public void onChipsRemoved(int list, int position, int count) {
+        if (list == ChipDataSource.SELECTED) {
+            notifyItemRangeRemoved(position, count);
+            notifyEditTextChanged();
+        }
+    }
+
+    @Override
+    public void onChipMoved(int list, int fromPosition, int toPosition) {
+        if (list == ChipDataSource.SELECTED) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    @Override
+    public void onChipChangesFinished() {}
+
+    /**
+     * Rebinds the EditText, which is always the last item, so its hint
+     * and width are updated for the selected chips.
+     *
+     * The payload lets the item animator rebind the same view holder, since
+     * there's only one EditText; a change without one would make it create
+     * another view holder for the EditText to animate the change.
+     */
+    private void notifyEditTextChanged() {
+        notifyItemChanged(getItemCount() - 1, PAYLOAD_INPUT);
+    }
+
+    private void bindEditText() {
+        if (mDataSource.getSelectedChips().size() == 0) {
+            mEditText.setHint(mOptions.mHint);
+        }
+
+        // Resize the edit text to fit in recycler
+        autoFitEditText();
+    }
+
     private void autoFitEditText() {
         // Set the EditText to a minimum width of its hint length
         ViewGroup.LayoutParams lp = mEditText.getLayoutParams();
@@ -1,4 +1,6 @@
 package com.tylersuehr.chips;
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.content.Context;
 import android.graphics.Paint;
 import android.support.v7.widget.AppCompatEditText;
@@ -9,12 +11,14 @@ import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
 import android.view.inputmethod.InputConnectionWrapper;
 import android.widget.RelativeLayout;
+import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
  *
  * Subclass of {@link AppCompatEditText} that provides a solution for detecting both
- * the IME_ACTION_DONE and backspace key press on software keyboards.
+ * the IME_ACTION_DONE and backspace key press on software keyboards, and text that's
+ * pasted into it.
  *
  * Setting onKeyEventListener doesn't work on software keyboards (IME) :(
  *
@@ -25,6 +29,7 @@ import android.widget.RelativeLayout;
  */
 public class ChipsEditText extends AppCompatEditText implements ChipComponent {
     private OnKeyboardListener mKeyboardListener;
+    private OnPasteListener mPasteListener;
 
 
     ChipsEditText(Context c) {
@@ -59,6 +64,25 @@ public class ChipsEditText extends AppCompatEditText implements ChipComponent {
         super.onEditorAction(actionCode);
     }
 
+    /**
+     * Used to detect text pasted from the clipboard, using the context menu.
+     */
+    @Override
+    public boolean onTextContextMenuItem(int id) {
+        if (id == android.R.id.paste && mPasteListener != null) {
+            final ClipboardManager clipboard = (ClipboardManager)getContext()
+                    .getSystemService(Context.CLIPBOARD_SERVICE);
+            final ClipData clip = (clipboard != null) ? clipboard.getPrimaryClip() : null;
+            if (clip != null && clip.getItemCount() > 0) {
+                final CharSequence text = clip.getItemAt(0).coerceToText(getContext());
+                if (text != null && mPasteListener.onTextPasted(text)) {
+                    return true;
+                }
+            }
+        }
+        return super.onTextContextMenuItem(id);
+    }
+
     @Override
     public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
         return new ChipsInputConnection(super.onCreateInputConnection(outAttrs));
@@ -91,6 +115,10 @@ public class ChipsEditText extends AppCompatEditText implements ChipComponent {
         return mKeyboardListener;
     }
 
+    void setOnPasteListener(OnPasteListener listener) {
+        mPasteListener = listener;
+    }
+
 
     /**
      * Callbacks for simplified keyboard action events.
@@ -98,6 +126,18 @@ public class ChipsEditText extends AppCompatEditText implements ChipComponent {
     interface OnKeyboardListener {
         void onKeyboardBackspace();
         void onKeyboardActionDone(String text);
+        void onKeyboardActionDone(List<String> texts);
+    }
+
+
+    /**
+     * Callbacks for text pasted, or committed at once by a keyboard.
+     */
+    interface OnPasteListener {
+        /**
+         * @return True if the text was handled, and shouldn't be inserted
+         */
+        boolean onTextPasted(CharSequence text);
     }
 
 
@@ -134,5 +174,16 @@ public class ChipsEditText extends AppCompatEditText implements ChipComponent {
             }
             return super.deleteSurroundingText(beforeLength, afterLength);
         }
+
+        /**
+         * Keyboards commit pasted text, from their own clipboards, all at once.
+         */
+        @Override
+        public boolean commitText(CharSequence text, int newCursorPosition) {
+            if (mPasteListener != null && mPasteListener.onTextPasted(text)) {
+                return true;
+            }
+            return super.commitText(text, newCursorPosition);
+        }
     }
 }
@@ -4,6 +4,7 @@ import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.support.annotation.DrawableRes;
 import android.support.v4.content.ContextCompat;
@@ -18,6 +19,9 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.RelativeLayout;
 import com.beloo.widget.chipslayoutmanager.ChipsLayoutManager;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -37,6 +41,10 @@ import java.util.regex.Pattern;
  */
 public class ChipsInputLayout extends MaxHeightScrollView
         implements FilterableChipsAdapter.OnFilteredChipClickListener {
+    /* Modes of debouncing the typed text, see setFilterDebounce(int, int) */
+    public static final int DEBOUNCE_TRAILING = 0;
+    public static final int DEBOUNCE_LEADING = 1;
+
     /* Stores mutable properties for our library */
     private final ChipOptions mOptions;
     /* Stores the source of all the chips */
@@ -56,11 +64,19 @@ public class ChipsInputLayout extends MaxHeightScrollView
     /* Displays filtered chips */
     private FilterableRecyclerView mFilteredRecycler;
     private FilterableChipsAdapter mFilteredAdapter;
+    /* Streams filterable chips into the data source, lazy loaded */
+    private ChipStreamLoader mStreamLoader;
 
     /* Stores reference to callback for text changed events */
     private OnChipsInputTextChangedListener mTextChangedListener;
     /* Used to validate selected chips */
     private ChipValidator mValidator;
+    /* Validates chips in parallel, and caches their results, if there's a validator */
+    private ChipBatchValidator mBatchValidator;
+    private ChipBatchValidator.Batch mValidation;
+    /* Turns large pasted text into chips, lazy loaded */
+    private ChipPasteImporter mPasteImporter;
+    private OnChipPasteListener mPasteListener;
 
 
     public ChipsInputLayout(Context context) {
@@ -75,6 +91,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
         super(c, attrs, defStyleAttr);
         mOptions = new ChipOptions(c, attrs, defStyleAttr);
         mDataSource = new ListChipDataSource();
+        applyFoldAccents(mDataSource);
 
         // Inflate the view
         inflate(c, R.layout.chips_input_view, this);
@@ -123,6 +140,70 @@ public class ChipsInputLayout extends MaxHeightScrollView
         loadFilterableRecycler();
     }
 
+    /**
+     * Sets a provider of the filterable chips, which are loaded one page at a time as
+     * they're displayed, instead of keeping all of them in memory; this changes the
+     * data source to a {@link PagedChipDataSource}, if needed, keeping the selected chips.
+     *
+     * Note: this should be called again with a new provider whenever its chips change.
+     *
+     * @param provider {@link ChipProvider}
+     */
+    public void setFilterableChipProvider(ChipProvider provider) {
+        if (mDataSource instanceof PagedChipDataSource) {
+            ((PagedChipDataSource)mDataSource).setChipProvider(provider);
+        } else {
+            final PagedChipDataSource dataSource = new PagedChipDataSource(provider);
+            dataSource.addSelectedChips(mDataSource.getSelectedChips());
+            changeChipDataSource(dataSource);
+        }
+
+        // Setup the filterable recycler when new
+        // filterable data has been set
+        loadFilterableRecycler();
+    }
+
+    /**
+     * Streams the filterable chips from the given iterator, which is used on a background
+     * thread; the chips are added a chunk at a time, so that those already added can be
+     * filtered while the rest are still being loaded. Any chips still being streamed, and
+     * the current filterable chips, are dropped.
+     *
+     * Note: if the data source is a {@link PagedChipDataSource}, it's changed to a
+     * {@link ListChipDataSource}, keeping the selected chips.
+     *
+     * @param chips {@link Iterator}
+     */
+    public void streamFilterableChips(Iterator<? extends Chip> chips) {
+        if (mDataSource instanceof PagedChipDataSource) {
+            final ListChipDataSource dataSource = new ListChipDataSource();
+            dataSource.addSelectedChips(mDataSource.getSelectedChips());
+            changeChipDataSource(dataSource);
+        }
+
+        final ChipStreamLoader loader = getChipStreamLoader();
+        loader.cancel();
+        mDataSource.clearFilteredChips();
+        loader.load(chips);
+
+        // Setup the filterable recycler when new
+        // filterable data has been set
+        loadFilterableRecycler();
+    }
+
+    /**
+     * Gets the loader used to stream filterable chips into the data source, which
+     * can also be offered chips by a producer on any thread.
+     *
+     * @return {@link ChipStreamLoader}
+     */
+    public ChipStreamLoader getChipStreamLoader() {
+        if (mStreamLoader == null) {
+            mStreamLoader = new ChipStreamLoader(mDataSource);
+        }
+        return mStreamLoader;
+    }
+
     /**
      * Sets and stores a list of chips that are selected and updates the UI
      * to display them accordingly.
@@ -130,12 +211,36 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param chips List of {@link Chip}
      */
     public void setSelectedChipList(List<? extends Chip> chips) {
-        // Set the selected chips in the data source
-        mDataSource.getSelectedChips().clear();
-        mDataSource.getSelectedChips().addAll(chips);
+        // Replace the selected chips in one batch, so that the UI is
+        // only updated once by the change observers
+        ChipDataSources.beginBatch(mDataSource);
+        try {
+            mDataSource.clearSelectedChips();
+            ChipDataSources.addSelectedChips(mDataSource, chips);
+        } finally {
+            ChipDataSources.endBatch(mDataSource);
+        }
+    }
+
+    /**
+     * Adds many new chips to the selected chips at once, which will update the
+     * UI accordingly because of the change observers.
+     *
+     * This is faster than adding each chip using {@link #addSelectedChip(Chip)},
+     * because the observers are only told about the change once.
+     *
+     * @param chips List of {@link Chip}
+     */
+    public void addSelectedChips(List<? extends Chip> chips) {
+        // Ensure that the chips are not already in the data source
+        for (Chip chip : chips) {
+            if (mDataSource.existsInDataSource(chip)) {
+                throw new IllegalArgumentException("Chip already exists in the data source!");
+            }
+        }
 
-        // Update the chips UI display
-        mChipsAdapter.notifyDataSetChanged();
+        // Using the method on data source will update UI
+        ChipDataSources.addSelectedChips(mDataSource, chips);
     }
 
     /**
@@ -160,6 +265,33 @@ public class ChipsInputLayout extends MaxHeightScrollView
         loadFilterableRecycler();
     }
 
+    /**
+     * Adds many new chips to the filterable chips at once, which will update the
+     * UI accordingly because of the change observers.
+     *
+     * This is faster than adding each chip using {@link #addFilteredChip(Chip)},
+     * because the chips are merged into the sorted filterable chips in one pass.
+     *
+     * @param chips List of {@link Chip}
+     */
+    public void addFilteredChips(List<? extends Chip> chips) {
+        for (Chip chip : chips) {
+            // Ensure that the chip is actually filterable
+            chip.setFilterable(true);
+
+            // Ensure that the chip is not already in the data source
+            if (mDataSource.existsInDataSource(chip)) {
+                throw new IllegalArgumentException("Chip already exists in the data source!");
+            }
+        }
+
+        // Using the method on data source will update UI
+        ChipDataSources.addFilteredChips(mDataSource, chips);
+
+        // Create the filterable recycler at this point, if needed
+        loadFilterableRecycler();
+    }
+
     /**
      * Adds a new chip to the selected chips, which will update the UI
      * accordingly because of the change observers.
@@ -237,12 +369,18 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @return {@link Chip}
      */
     public Chip getSelectedChipById(Object id) {
-        for (Chip chip : mDataSource.getSelectedChips()) {
-            if (chip.getId() != null && chip.getId().equals(id)) {
-                return chip;
-            }
-        }
-        return null;
+        return ChipDataSources.getSelectedChipById(mDataSource, id);
+    }
+
+    /**
+     * Gets the selected chips using the given IDs, in the order of the IDs;
+     * IDs that no selected chip has are skipped.
+     *
+     * @param ids IDs of the selected chips
+     * @return List of {@link Chip}
+     */
+    public List<? extends Chip> getSelectedChipsByIds(Collection<?> ids) {
+        return ChipDataSources.getSelectedChipsByIds(mDataSource, ids);
     }
 
     /**
@@ -297,12 +435,18 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @return {@link Chip}
      */
     public Chip getFilteredChipById(Object id) {
-        for (Chip chip : mDataSource.getFilteredChips()) {
-            if (chip.getId() != null && chip.getId().equals(id)) {
-                return chip;
-            }
-        }
-        return null;
+        return ChipDataSources.getFilteredChipById(mDataSource, id);
+    }
+
+    /**
+     * Gets the filtered chips using the given IDs, in the order of the IDs;
+     * IDs that no filtered chip has are skipped.
+     *
+     * @param ids IDs of the filtered chips
+     * @return List of {@link Chip}
+     */
+    public List<? extends Chip> getFilteredChipsByIds(Collection<?> ids) {
+        return ChipDataSources.getFilteredChipsByIds(mDataSource, ids);
     }
 
     /**
@@ -396,13 +540,101 @@ public class ChipsInputLayout extends MaxHeightScrollView
         return true;
     }
 
+    /**
+     * Validates all the selected chips using {@link #mValidator}, in parallel off the
+     * main thread; results are cached by the IDs of the chips, so chips are only
+     * validated again if they changed. This cancels any validation in progress.
+     *
+     * Note: the {@link ChipValidator} must be thread-safe for this.
+     *
+     * @param stopOnInvalid True if validation should stop at the first invalid chip
+     * @param listener {@link OnChipsValidatedListener}
+     */
+    public void validateSelectedChipsAsync(boolean stopOnInvalid,
+                                           final OnChipsValidatedListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("Listener cannot be null!");
+        }
+
+        cancelChipValidation();
+        final List<Chip> chips = mDataSource.getSelectedChips();
+        if (mBatchValidator == null) {
+            listener.onChipsValidated(chips, Collections.<Chip>emptyList());
+            return;
+        }
+        final ChipBatchValidator.Callback callback = new ChipBatchValidator.Callback() {
+            @Override
+            public void onValidationProgress(int validated, int count) {
+                listener.onChipValidationProgress(validated, count);
+            }
+
+            @Override
+            public void onValidationFinished(List<Chip> valid, List<Chip> invalid) {
+                mValidation = null;
+                listener.onChipsValidated(valid, invalid);
+            }
+        };
+        mValidation = mBatchValidator.validate(chips, stopOnInvalid, callback);
+    }
+
+    /**
+     * Cancels any validation of the selected chips in progress, so its listener
+     * isn't called.
+     */
+    public void cancelChipValidation() {
+        if (mValidation != null) {
+            mValidation.cancel();
+            mValidation = null;
+        }
+    }
+
+    /**
+     * Drops the cached results of validating chips, which is needed if the validator
+     * would now validate them differently.
+     */
+    public void clearChipValidationCache() {
+        if (mBatchValidator != null) {
+            mBatchValidator.clearCache();
+        }
+    }
+
     /**
      * Sets the chip mValidator to valid chips.
      *
      * @param validator {@link ChipValidator}
      */
     public void setChipValidator(ChipValidator validator) {
+        cancelChipValidation();
         mValidator = validator;
+        mBatchValidator = (validator != null)
+                ? new ChipBatchValidator(validator, AsyncTask.THREAD_POOL_EXECUTOR) : null;
+    }
+
+    /**
+     * Sets a listener for chips made from large pasted text, which can show the
+     * progress of validating them.
+     *
+     * @param listener {@link OnChipPasteListener}
+     */
+    public void setOnChipPasteListener(OnChipPasteListener listener) {
+        mPasteListener = listener;
+    }
+
+    /**
+     * Sets the shortest pasted text that's split into chips all at once; the text is
+     * split using the delimiter (or line breaks, commas, and semicolons, if there's no
+     * delimiter), and the chips are validated in parallel, off the main thread. Text
+     * that doesn't contain the delimiter, like dictated text, is inserted as usual.
+     *
+     * This is off by default. Note: the {@link ChipValidator} must be thread-safe for this.
+     *
+     * @param threshold Length of the text, or zero to paste text as usual
+     */
+    public void setPasteThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Paste threshold cannot be negative!");
+        }
+        mOptions.mPasteThreshold = threshold;
     }
 
     /**
@@ -453,9 +685,26 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param dataSource {@link ChipDataSource}
      */
     public void changeChipDataSource(ChipDataSource dataSource) {
+        // Index the new data source like the options say, before it has observers
+        applyFoldAccents(dataSource);
+
+        // Stop streaming chips into the old data source
+        if (mStreamLoader != null) {
+            mStreamLoader.cancel();
+            mStreamLoader = null;
+        }
+
+        // Move the observers, so the old data source no longer updates anything
         mDataSource.cloneObservers(dataSource);
+        mDataSource.removeAllChangedObservers();
+        mDataSource.removeAllSelectionObservers();
         mDataSource = dataSource;
-        mChipsAdapter.notifyDataSetChanged();
+
+        // Point the adapters at the new data source, which updates them
+        mChipsAdapter.changeDataSource(dataSource);
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.changeDataSource(dataSource);
+        }
     }
 
     /**
@@ -564,6 +813,138 @@ public class ChipsInputLayout extends MaxHeightScrollView
         mOptions.mFilterableListElevation = elevation;
     }
 
+    /**
+     * Sets if the filtered chips are ranked by how well they match the typed text,
+     * keeping only the best ones, instead of listing every match alphabetically.
+     *
+     * @param rank True if the filtered chips should be ranked
+     */
+    public void setFilterListRanked(boolean rank) {
+        mOptions.mRankFilteredChips = rank;
+    }
+
+    /**
+     * Sets if ranked filtered chips that were selected more often are ranked
+     * higher than others that match equally well.
+     *
+     * @param boost True if frequently selected chips should be boosted
+     */
+    public void setBoostFrequentChips(boolean boost) {
+        mOptions.mBoostFrequentChips = boost;
+    }
+
+    /**
+     * Sets the most filtered chips that are displayed for the typed text, so that short
+     * text matching many chips is cheap to filter; more of them are displayed when the
+     * user scrolls to the end of the list.
+     *
+     * @param maxResults Most filtered chips, or zero to display all of them
+     */
+    public void setFilterListMaxResults(int maxResults) {
+        if (maxResults < 0) {
+            throw new IllegalArgumentException("Max results cannot be negative!");
+        }
+        mOptions.mFilterMaxResults = maxResults;
+    }
+
+    /**
+     * Sets if filtering tolerates typos, using {@link FuzzyChipMatcher}; so that the
+     * chips still match when the user mistypes a character or two.
+     *
+     * Note: this doesn't use the search index of the data source.
+     *
+     * @param fuzzy True if filtering should tolerate typos
+     */
+    public void setFuzzyFiltering(boolean fuzzy) {
+        mOptions.mChipMatcher = fuzzy ? new FuzzyChipMatcher(
+                FuzzyChipMatcher.DEFAULT_MAX_EDITS, mOptions.mFoldAccents) : null;
+    }
+
+    /**
+     * Sets if accents are ignored when filtering, so that "jose" matches "José"; this
+     * rebuilds the default search index of the data source, if it has one, and the
+     * matcher used for fuzzy filtering, if enabled.
+     *
+     * @param fold True if accents should be ignored
+     */
+    public void setFoldAccents(boolean fold) {
+        mOptions.mFoldAccents = fold;
+        if (mOptions.mChipMatcher != null
+                && mOptions.mChipMatcher.getClass() == FuzzyChipMatcher.class) {
+            mOptions.mChipMatcher = ((FuzzyChipMatcher)mOptions.mChipMatcher).withFoldAccents(fold);
+        }
+        applyFoldAccents(mDataSource);
+    }
+
+    /**
+     * Rebuilds the default search index of the given data source, if it has one that
+     * doesn't fold accents like the options say; other indexes are left alone.
+     */
+    private void applyFoldAccents(ChipDataSource dataSource) {
+        final ChipSearchIndex index = ChipDataSources.getSearchIndex(dataSource);
+        if (index instanceof TrigramChipSearchIndex
+                && ((TrigramChipSearchIndex)index).isFoldingAccents() != mOptions.mFoldAccents) {
+            ChipDataSources.setSearchIndex(dataSource,
+                    new TrigramChipSearchIndex(mOptions.mFoldAccents));
+        }
+    }
+
+    /**
+     * Sets how long the typed text must stay unchanged before it's filtered, and the
+     * text changed listener is called, so that a burst of keystrokes only does it once.
+     *
+     * With {@link #DEBOUNCE_TRAILING}, that happens once the text stops changing. With
+     * {@link #DEBOUNCE_LEADING}, it happens right away for the first keystroke, and once
+     * the text stops changing only if it changed since then.
+     *
+     * @param delayMillis Delay in milliseconds, or zero to not debounce
+     * @param mode {@link #DEBOUNCE_TRAILING} or {@link #DEBOUNCE_LEADING}
+     */
+    public void setFilterDebounce(int delayMillis, int mode) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Debounce delay cannot be negative!");
+        }
+        if (mode != DEBOUNCE_TRAILING && mode != DEBOUNCE_LEADING) {
+            throw new IllegalArgumentException("Unknown debounce mode!");
+        }
+        mOptions.mDebounceDelay = delayMillis;
+        mOptions.mDebounceMode = mode;
+    }
+
+    /**
+     * Sets the rule used to check if the filterable chips match the typed text.
+     *
+     * Note: without a matcher, the search index of the data source is used, which
+     * matches chips containing the typed text; with a matcher, the index is only used
+     * to find the chips it could match, if its queries are a {@link ChipMatcher.IndexedQuery}.
+     *
+     * @param matcher {@link ChipMatcher}, or null to match by default
+     */
+    public void setChipMatcher(ChipMatcher matcher) {
+        mOptions.mChipMatcher = matcher;
+    }
+
+    public ChipMatcher getChipMatcher() {
+        return mOptions.mChipMatcher;
+    }
+
+    /**
+     * Sets the search index used to filter the filterable chips, which is given all
+     * of them to index up front; it's kept up-to-date as chips are selected.
+     *
+     * Note: with a {@link ChipMatcher}, this is only used to find the chips it could match.
+     *
+     * @param searchIndex {@link ChipSearchIndex}
+     * @throws UnsupportedOperationException if the data source doesn't support it
+     */
+    public void setSearchIndex(ChipSearchIndex searchIndex) {
+        ChipDataSources.setSearchIndex(mDataSource, searchIndex);
+    }
+
+    public ChipSearchIndex getSearchIndex() {
+        return ChipDataSources.getSearchIndex(mDataSource);
+    }
+
     public void setCustomChipsEnabled(boolean enabled) {
         mOptions.mAllowCustomChips = enabled;
     }
@@ -586,6 +967,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
     }
 
     public void setDelimiter(String delimiter, boolean regex){
+        mOptions.mDelimiterPattern = ChipTokenizer.compile(delimiter, regex);
         mOptions.mDelimiter = delimiter;
         mOptions.mDelimiterRegex = regex;
     }
@@ -619,10 +1001,68 @@ public class ChipsInputLayout extends MaxHeightScrollView
             mChipsInput = new ChipsEditText(getContext());
             mChipsInput.setChipOptions(mOptions);
             mChipsInput.addTextChangedListener(new ChipInputTextChangedHandler());
+            mChipsInput.setOnPasteListener(new ChipsEditText.OnPasteListener() {
+                @Override
+                public boolean onTextPasted(CharSequence text) {
+                    return pasteChips(text);
+                }
+            });
         }
         return mChipsInput;
     }
 
+    /**
+     * Splits the given pasted text into chips, off the main thread, if it's long enough;
+     * and adds the valid chips to the selected chips all at once.
+     *
+     * @return True if the text is being split, so it shouldn't be inserted
+     */
+    private boolean pasteChips(CharSequence text) {
+        if (!mOptions.mAllowCustomChips || mOptions.mPasteThreshold <= 0
+                || text.length() < mOptions.mPasteThreshold) {
+            return false;
+        }
+
+        // Text without the delimiter is inserted right away, instead of later
+        final Pattern delimiter = (mOptions.mDelimiterPattern != null)
+                ? mOptions.mDelimiterPattern : ChipPasteImporter.DEFAULT_DELIMITER;
+        if (!delimiter.matcher(text).find()) {
+            return false;
+        }
+
+        if (mPasteImporter == null) {
+            mPasteImporter = new ChipPasteImporter(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+        mPasteImporter.paste(text, delimiter, mBatchValidator, new ChipPasteImporter.Callback() {
+            @Override
+            public void onPasteProgress(int validated, int count) {
+                if (mPasteListener != null) {
+                    mPasteListener.onChipPasteProgress(validated, count);
+                }
+            }
+
+            @Override
+            public void onPasteFinished(List<Chip> valid, List<Chip> invalid) {
+                // One notification for all the chips
+                ChipDataSources.addSelectedChips(mDataSource, valid);
+                if (mPasteListener != null) {
+                    mPasteListener.onChipsPasted(valid, invalid);
+                }
+            }
+
+            @Override
+            public void onPasteNotSplit(String text) {
+                // Insert the text as usual, replacing any selected text
+                final int start = Math.max(0, Math.min(
+                        mChipsInput.getSelectionStart(), mChipsInput.getSelectionEnd()));
+                final int end = Math.max(0, Math.max(
+                        mChipsInput.getSelectionStart(), mChipsInput.getSelectionEnd()));
+                mChipsInput.getText().replace(start, end, text);
+            }
+        });
+        return true;
+    }
+
     private void loadFilterableRecycler() {
         if (mFilteredRecycler == null) {
             // Create and set the filterable chips adapter
@@ -665,57 +1105,105 @@ public class ChipsInputLayout extends MaxHeightScrollView
     }
 
 
+    /**
+     * Defines callbacks for validating the selected chips off the main thread,
+     * on the main thread.
+     */
+    public interface OnChipsValidatedListener {
+        void onChipValidationProgress(int validated, int count);
+        void onChipsValidated(List<? extends Chip> valid, List<? extends Chip> invalid);
+    }
+
+
+    /**
+     * Defines callbacks for chips made from large pasted text, on the main thread.
+     */
+    public interface OnChipPasteListener {
+        void onChipPasteProgress(int validated, int count);
+        void onChipsPasted(List<? extends Chip> added, List<? extends Chip> rejected);
+    }
+
+
     /**
      * Implementation of {@link TextWatcher} that handles two things for us:
      * (1) Hides the filterable recycler if the user removes all the text from input.
      * (2) Tells the filterable recycler to filter the chips when the user enters text.
      */
     private final class ChipInputTextChangedHandler implements TextWatcher {
-        @Override
-        public void onTextChanged(CharSequence s, int start, int before, int count) {
-            if (mFilteredRecycler != null) {
-                // Hide the filterable recycler if there is no filter.
-                // Filter the recycler if there is a filter
-                if (TextUtils.isEmpty(s)) {
-                    mFilteredRecycler.fadeOut();
-                } else {
-                    mFilteredRecycler.filterChips(s);
+        /* Used to debounce the typed text, reusing the same runnable */
+        private final Handler mHandler = new Handler();
+        private final Runnable mDebounced = new Runnable() {
+            @Override
+            public void run() {
+                mBurst = false;
+                final String text = mChipsInput.getText().toString();
+                if (!text.equals(mDispatchedText)) {
+                    dispatchTextChanged(text);
                 }
             }
-        }
+        };
+        /* True while the text keeps changing within the debounce delay */
+        private boolean mBurst;
+        /* Text that was last filtered, and given to the listener */
+        private String mDispatchedText;
+
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {}
 
         @Override
         public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
 
         @Override
         public void afterTextChanged(final Editable s) {
-            if (mTextChangedListener != null) {
-                mTextChangedListener.onChipsInputTextChanged(s);
-
-                // TODO:
-                // As this is a listener used mostly to dynamically change
-                // the filteredList, a timeout before filtering should be
-                // configured to replace 1500(ms) hardcoded value
-                new Handler().postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        onTextChanged(s, 0, 0, 0);
-                    }
-                }, 1500);
+            final int delay = mOptions.mDebounceDelay;
+            if (delay <= 0 || s.length() == 0) {
+                // Don't wait to hide the filterable recycler
+                mHandler.removeCallbacks(mDebounced);
+                mBurst = false;
+                dispatchTextChanged(s.toString());
+            } else if (mOptions.mDebounceMode == DEBOUNCE_LEADING && !mBurst) {
+                mBurst = true;
+                dispatchTextChanged(s.toString());
+                mHandler.postDelayed(mDebounced, delay);
+            } else {
+                // Wait until the text stops changing
+                mBurst = true;
+                mHandler.removeCallbacks(mDebounced);
+                mHandler.postDelayed(mDebounced, delay);
             }
 
-            String delimiter = mOptions.mDelimiter;
-            if(delimiter != null && delimiter.length() > 0 && mChipsInput.getKeyboardListener() != null){
-                String delimiterRegex = mOptions.mDelimiterRegex ? delimiter : Pattern.quote(delimiter);
-                final String text = s.toString();
-                if(Pattern.compile(delimiterRegex).matcher(text).find()){
-                    final String[] pieces = text.split(delimiterRegex);
-                    for(String piece : pieces) {
-                        mChipsInput.getKeyboardListener().onKeyboardActionDone(piece);
-                    }
+            // Split the text into chips, all at once, if it contains the delimiter
+            final Pattern delimiter = mOptions.mDelimiterPattern;
+            if (delimiter != null && mChipsInput.getKeyboardListener() != null) {
+                final List<String> pieces = ChipTokenizer.tokenize(s, delimiter);
+                if (!pieces.isEmpty()) {
+                    mChipsInput.getKeyboardListener().onKeyboardActionDone(pieces);
                 }
             }
         }
+
+        /**
+         * Filters the given text, hiding the filterable recycler if there's no text,
+         * and calls the text changed listener.
+         *
+         * The listener may change the filterable chips; if so, the adapter filters
+         * them again by itself, since it observes the data source.
+         */
+        private void dispatchTextChanged(String text) {
+            mDispatchedText = text;
+            if (mFilteredRecycler != null) {
+                if (TextUtils.isEmpty(text)) {
+                    mFilteredAdapter.clearFilter();
+                    mFilteredRecycler.fadeOut();
+                } else {
+                    mFilteredRecycler.filterChips(text);
+                }
+            }
+            if (mTextChangedListener != null) {
+                mTextChangedListener.onChipsInputTextChanged(text);
+            }
+        }
     }
 
 
@@ -0,0 +1,721 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link ObservableChipDataSource} that can be changed from any thread,
+ * like when chips are loaded by a background producer while the user is typing.
+ *
+ * The chips are stored in immutable snapshots. Every change copies the lists it changes
+ * into a new snapshot, with a higher version, while holding a lock; reading never takes
+ * the lock, and the lists returned can never change afterwards.
+ *
+ * Observers are notified on the given {@link Executor}, which is the main thread by
+ * default. The lists returned by this are the ones of the snapshot that observers were
+ * last notified about, so that an adapter's item count only changes when it's told to;
+ * while checking if chips exist, or finding chips by their IDs, uses the latest
+ * snapshot. The lists that each chip is in, and the chips with each ID, are kept up to
+ * date with every change, so neither depends on how many chips there are. Changes made before observers
+ * are notified are coalesced into one coarse notification, and batches should be
+ * begun and ended on the executor's thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ConcurrentChipDataSource extends ObservableChipDataSource {
+    /* Flags of the lists that a chip can be in */
+    private static final int IN_ORIGINAL = 1;
+    private static final int IN_FILTERED = 1 << 1;
+    private static final int IN_SELECTED = 1 << 2;
+
+    /* Latest snapshot of the chips, changed only while holding the lock */
+    private volatile Snapshot mSnapshot;
+    /* Snapshot that observers were last notified about */
+    private volatile Snapshot mPublished;
+    /* Guards changes to the snapshots, the membership, and the search index */
+    private final Object mLock = new Object();
+    /* Lists that each chip of the latest snapshot is in, changed only while holding the lock */
+    private final Map<Chip, Integer> mMembership = new ConcurrentHashMap<>();
+    /* Chips of the latest snapshot stored by their IDs; filtered chips are always original */
+    private final ChipIdMap mOriginalIds = new ChipIdMap();
+    private final ChipIdMap mSelectedIds = new ChipIdMap();
+
+    /* Index of the original chips, used to filter them */
+    private volatile ChipSearchIndex mSearchIndex = new TrigramChipSearchIndex();
+
+    /* Used to notify observers, and if a change notification is already waiting */
+    private final Executor mExecutor;
+    private final AtomicBoolean mChangePending = new AtomicBoolean();
+    private final Runnable mChangeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Clear the flag before reading the snapshot, so no change is missed
+            mChangePending.set(false);
+            mPublished = mSnapshot;
+            notifyDataSourceChanged();
+        }
+    };
+
+
+    /* Construct with all empty lists, notifying observers on the main thread */
+    public ConcurrentChipDataSource() {
+        this(new MainThreadExecutor());
+    }
+
+    public ConcurrentChipDataSource(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor cannot be null!");
+        }
+        final List<Chip> empty = Collections.emptyList();
+        mExecutor = executor;
+        mSnapshot = new Snapshot(empty, empty, empty, 0);
+        mPublished = mSnapshot;
+    }
+
+    /**
+     * Gets the version of the latest snapshot, which increases with every change.
+     * @return Version
+     */
+    public int getVersion() {
+        return mSnapshot.version;
+    }
+
+    @Override
+    public List<Chip> getSelectedChips() {
+        return mPublished.selected;
+    }
+
+    @Override
+    public List<Chip> getFilteredChips() {
+        return mPublished.filtered;
+    }
+
+    @Override
+    public List<Chip> getOriginalChips() {
+        return mPublished.original;
+    }
+
+    /**
+     * The original chips of the published snapshot, which never change.
+     */
+    @Override
+    public List<Chip> getOriginalChipsSnapshot() {
+        return mPublished.original;
+    }
+
+    @Override
+    public Chip getFilteredChip(int position) {
+        return mPublished.filtered.get(position);
+    }
+
+    @Override
+    public Chip getSelectedChip(int position) {
+        return mPublished.selected.get(position);
+    }
+
+    @Override
+    public void setFilterableChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        final List<Chip> original = new ArrayList<>(chips.size());
+        for (Chip chip : chips) {
+            chip.setFilterable(true);
+            original.add(chip);
+        }
+        Collections.sort(original, Chip.getComparator());
+
+        synchronized (mLock) {
+            final List<Chip> selected = Collections.emptyList();
+            mMembership.clear();
+            mOriginalIds.clear();
+            mSelectedIds.clear();
+            for (Chip chip : original) {
+                mark(chip, IN_ORIGINAL | IN_FILTERED);
+            }
+            mSearchIndex.setChips(original);
+            publish(mSnapshot.with(selected, new ArrayList<>(original), original));
+        }
+        scheduleChanged();
+    }
+
+    @Override
+    public void updateFilteredChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        // Filtering publishes its own results, so the published snapshot changes
+        // right away, and observers aren't notified here
+        final List<Chip> filtered = new ArrayList<>(chips.size());
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            for (Chip chip : latest.filtered) {
+                unmark(chip, IN_FILTERED);
+            }
+
+            // The chips were filtered from an older snapshot, so skip any that were
+            // taken or removed since; they'd be both filtered and selected otherwise
+            for (Chip chip : chips) {
+                if (isMarked(chip, IN_ORIGINAL)) {
+                    mark(chip, IN_FILTERED);
+                    filtered.add(chip);
+                }
+            }
+            publish(latest.with(latest.selected, filtered, latest.original));
+
+            final Snapshot published = mPublished;
+            mPublished = published.with(published.selected, filtered, published.original);
+        }
+    }
+
+    @Override
+    public void takeChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!chip.isFilterable()) {
+            throw new IllegalArgumentException("Cannot take a non-filterable chip!");
+        }
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            if (!isMarked(chip, IN_FILTERED)) {
+                throw new IllegalArgumentException("Chip is not in filtered chip list!");
+            }
+            unmark(chip, IN_ORIGINAL | IN_FILTERED);
+            mark(chip, IN_SELECTED);
+            mSearchIndex.removeChip(chip);
+            publish(latest.with(
+                    added(latest.selected, chip),
+                    removed(latest.filtered, chip),
+                    removed(latest.original, chip)));
+        }
+        scheduleChanged();
+        scheduleSelection(chip, true);
+    }
+
+    @Override
+    public void takeChip(int position) {
+        // The position comes from the published chips, which the UI displays
+        final Chip foundChip = mPublished.filtered.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; " +
+                    "not found in filtered chip list!");
+        }
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            if (foundChip.isFilterable()) {
+                // Another thread may have taken it since it was published
+                if (!isMarked(foundChip, IN_FILTERED)) {
+                    throw new IllegalArgumentException("Chip is not in filtered chip list!");
+                }
+                unmark(foundChip, IN_ORIGINAL | IN_FILTERED);
+                mark(foundChip, IN_SELECTED);
+                mSearchIndex.removeChip(foundChip);
+                publish(latest.with(
+                        added(latest.selected, foundChip),
+                        removed(latest.filtered, foundChip),
+                        removed(latest.original, foundChip)));
+            } else {
+                mark(foundChip, IN_SELECTED);
+                publish(latest.with(
+                        added(latest.selected, foundChip),
+                        latest.filtered,
+                        latest.original));
+            }
+        }
+        scheduleChanged();
+        scheduleSelection(foundChip, true);
+    }
+
+    @Override
+    public void replaceChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+
+        synchronized (mLock) {
+            if (!isMarked(chip, IN_SELECTED)) {
+                throw new IllegalArgumentException("Chip is not in selected chip list!");
+            }
+            unselect(chip);
+        }
+        scheduleChanged();
+        scheduleSelection(chip, false);
+    }
+
+    @Override
+    public void replaceChip(int position) {
+        // The position comes from the published chips, which the UI displays
+        final Chip foundChip = mPublished.selected.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; not " +
+                    "found in selected chip list!");
+        }
+
+        synchronized (mLock) {
+            // Another thread may have replaced it since it was published
+            if (!isMarked(foundChip, IN_SELECTED)) {
+                throw new IllegalArgumentException("Chip is not in selected chip list!");
+            }
+            unselect(foundChip);
+        }
+        scheduleChanged();
+        scheduleSelection(foundChip, false);
+    }
+
+    @Override
+    public void addFilteredChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        chip.setFilterable(true);
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            mark(chip, IN_ORIGINAL | IN_FILTERED);
+            mSearchIndex.addChip(chip);
+            publish(latest.with(
+                    latest.selected,
+                    inserted(latest.filtered, chip),
+                    inserted(latest.original, chip)));
+        }
+        scheduleChanged();
+    }
+
+    @Override
+    public void addFilteredChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        // Sort the batch by itself, so it can be merged in one pass
+        final List<Chip> batch = new ArrayList<>(chips);
+        for (Chip chip : batch) {
+            chip.setFilterable(true);
+        }
+        Collections.sort(batch, Chip.getComparator());
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            for (Chip chip : batch) {
+                mark(chip, IN_ORIGINAL | IN_FILTERED);
+            }
+            final List<Chip> original = merged(latest.original, batch);
+
+            // Rebuilding the index is cheaper than appending most of it
+            if (batch.size() >= latest.original.size()) {
+                mSearchIndex.setChips(original);
+            } else {
+                for (Chip chip : batch) {
+                    mSearchIndex.addChip(chip);
+                }
+            }
+            publish(latest.with(latest.selected, merged(latest.filtered, batch), original));
+        }
+        scheduleChanged();
+    }
+
+    @Override
+    public void addSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            mark(chip, IN_SELECTED);
+            publish(latest.with(added(latest.selected, chip), latest.filtered, latest.original));
+        }
+        scheduleChanged();
+        scheduleSelection(chip, true);
+    }
+
+    @Override
+    public void addSelectedChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+        for (Chip chip : chips) {
+            if (chip == null) {
+                throw new NullPointerException("Chip cannot be null!");
+            }
+        }
+
+        synchronized (mLock) {
+            final Snapshot latest = mSnapshot;
+            final List<Chip> selected = new ArrayList<>(latest.selected.size() + chips.size());
+            selected.addAll(latest.selected);
+            selected.addAll(chips);
+            for (Chip chip : chips) {
+                mark(chip, IN_SELECTED);
+            }
+            publish(latest.with(selected, latest.filtered, latest.original));
+        }
+        scheduleChanged();
+        for (Chip chip : chips) {
+            scheduleSelection(chip, true);
+        }
+    }
+
+    @Override
+    public void clearFilteredChips() {
+        synchronized (mLock) {
+            final List<Chip> empty = Collections.emptyList();
+            for (Chip chip : mSnapshot.original) {
+                unmark(chip, IN_ORIGINAL | IN_FILTERED);
+            }
+            for (Chip chip : mSnapshot.filtered) {
+                unmark(chip, IN_FILTERED);
+            }
+            mSearchIndex.clear();
+            publish(mSnapshot.with(mSnapshot.selected, empty, empty));
+        }
+        scheduleChanged();
+    }
+
+    @Override
+    public void clearSelectedChips() {
+        final List<Chip> cleared;
+        synchronized (mLock) {
+            final List<Chip> empty = Collections.emptyList();
+            final Snapshot latest = mSnapshot;
+            cleared = latest.selected;
+            for (Chip chip : cleared) {
+                unmark(chip, IN_SELECTED);
+            }
+            publish(latest.with(empty, latest.filtered, latest.original));
+        }
+
+        scheduleChanged();
+        for (Chip chip : cleared) {
+            scheduleSelection(chip, false);
+        }
+    }
+
+    @Override
+    public boolean existsInFiltered(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return isMarked(chip, IN_FILTERED);
+    }
+
+    @Override
+    public boolean existsInSelected(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return isMarked(chip, IN_SELECTED);
+    }
+
+    @Override
+    public boolean existsInDataSource(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mMembership.containsKey(chip);
+    }
+
+    @Override
+    public Chip getSelectedChipById(Object id) {
+        return mSelectedIds.get(id, IN_SELECTED);
+    }
+
+    @Override
+    public Chip getFilteredChipById(Object id) {
+        return mOriginalIds.get(id, IN_FILTERED);
+    }
+
+    @Override
+    public List<Chip> getSelectedChipsByIds(Collection<?> ids) {
+        return mSelectedIds.getAll(ids, IN_SELECTED);
+    }
+
+    @Override
+    public List<Chip> getFilteredChipsByIds(Collection<?> ids) {
+        return mOriginalIds.getAll(ids, IN_FILTERED);
+    }
+
+    @Override
+    public ChipSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    @Override
+    public void setSearchIndex(ChipSearchIndex searchIndex) {
+        if (searchIndex == null) {
+            throw new NullPointerException("Search index cannot be null!");
+        }
+        synchronized (mLock) {
+            searchIndex.setChips(mSnapshot.original);
+            mSearchIndex = searchIndex;
+        }
+        scheduleChanged();
+    }
+
+    /* Must hold the lock */
+    private void unselect(Chip chip) {
+        final Snapshot latest = mSnapshot;
+        unmark(chip, IN_SELECTED);
+        if (chip.isFilterable()) {
+            mark(chip, IN_ORIGINAL | IN_FILTERED);
+            mSearchIndex.addChip(chip);
+            publish(latest.with(
+                    removed(latest.selected, chip),
+                    inserted(latest.filtered, chip),
+                    inserted(latest.original, chip)));
+        } else {
+            publish(latest.with(removed(latest.selected, chip), latest.filtered, latest.original));
+        }
+    }
+
+    /* Must hold the lock */
+    private void publish(Snapshot snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    private boolean isMarked(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        return membership != null && (membership & flags) != 0;
+    }
+
+    /* Must hold the lock */
+    private void mark(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        final int old = (membership == null) ? 0 : membership;
+        mMembership.put(chip, old | flags);
+
+        // Store the chip by its ID, when it's added to a list that has them
+        final int added = flags & ~old;
+        if ((added & IN_ORIGINAL) != 0) {
+            mOriginalIds.put(chip);
+        }
+        if ((added & IN_SELECTED) != 0) {
+            mSelectedIds.put(chip);
+        }
+    }
+
+    /* Must hold the lock */
+    private void unmark(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        if (membership != null) {
+            final int remaining = membership & ~flags;
+            if (remaining == 0) {
+                mMembership.remove(chip);
+            } else {
+                mMembership.put(chip, remaining);
+            }
+
+            final int removed = membership & flags;
+            if ((removed & IN_ORIGINAL) != 0) {
+                mOriginalIds.remove(chip);
+            }
+            if ((removed & IN_SELECTED) != 0) {
+                mSelectedIds.remove(chip);
+            }
+        }
+    }
+
+    private void scheduleChanged() {
+        if (mChangePending.compareAndSet(false, true)) {
+            mExecutor.execute(mChangeRunnable);
+        }
+    }
+
+    private void scheduleSelection(final Chip chip, final boolean selected) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (selected) {
+                    notifyChipSelected(chip);
+                } else {
+                    notifyChipUnselected(chip);
+                }
+            }
+        });
+    }
+
+    private static List<Chip> added(List<Chip> chips, Chip chip) {
+        final List<Chip> copy = new ArrayList<>(chips.size() + 1);
+        copy.addAll(chips);
+        copy.add(chip);
+        return copy;
+    }
+
+    private static List<Chip> inserted(List<Chip> chips, Chip chip) {
+        final List<Chip> copy = new ArrayList<>(chips.size() + 1);
+        copy.addAll(chips);
+        copy.add(ListChipDataSource.insertionPoint(chips, chip), chip);
+        return copy;
+    }
+
+    /**
+     * Merges the given sorted batch into a copy of the given sorted list in one pass,
+     * after any chips that compare equal to them. The chips between those of the batch
+     * are found by binary search and copied as runs, so a small batch only compares
+     * a few of them.
+     */
+    private static List<Chip> merged(List<Chip> chips, List<Chip> batch) {
+        final List<Chip> merged = new ArrayList<>(chips.size() + batch.size());
+        int copied = 0;
+        for (Chip chip : batch) {
+            final int position = ListChipDataSource.insertionPoint(chips, chip);
+            if (position > copied) {
+                merged.addAll(chips.subList(copied, position));
+                copied = position;
+            }
+            merged.add(chip);
+        }
+        merged.addAll(chips.subList(copied, chips.size()));
+        return merged;
+    }
+
+    private static List<Chip> removed(List<Chip> chips, Chip chip) {
+        final int position = chips.indexOf(chip);
+        if (position < 0) {
+            return chips;
+        }
+        final List<Chip> copy = new ArrayList<>(chips);
+        copy.remove(position);
+        return copy;
+    }
+
+
+    /**
+     * Immutable lists of chips at some version of the data source.
+     */
+    private static final class Snapshot {
+        final List<Chip> selected;
+        final List<Chip> filtered;
+        final List<Chip> original;
+        final int version;
+
+
+        Snapshot(List<Chip> selected, List<Chip> filtered, List<Chip> original, int version) {
+            this.selected = Collections.unmodifiableList(selected);
+            this.filtered = Collections.unmodifiableList(filtered);
+            this.original = Collections.unmodifiableList(original);
+            this.version = version;
+        }
+
+        Snapshot with(List<Chip> selected, List<Chip> filtered, List<Chip> original) {
+            return new Snapshot(selected, filtered, original, version + 1);
+        }
+    }
+
+
+    /**
+     * Stores the chips by their IDs, including chips that share an ID, so they can be
+     * found without scanning; changed only while holding the lock, but read without it.
+     *
+     * Chips sharing an ID are stored in an array that's copied when it changes, so
+     * readers never see it change.
+     */
+    private final class ChipIdMap {
+        private final Map<Object, Object> mChips = new ConcurrentHashMap<>();
+
+        /* Must hold the lock */
+        void put(Chip chip) {
+            final Object id = chip.getId();
+            if (id == null) { return; }
+
+            final Object found = mChips.get(id);
+            if (found == null) {
+                mChips.put(id, chip);
+            } else if (found instanceof Chip) {
+                mChips.put(id, new Chip[] { (Chip)found, chip });
+            } else {
+                final Chip[] chips = (Chip[])found;
+                final Chip[] grown = Arrays.copyOf(chips, chips.length + 1);
+                grown[chips.length] = chip;
+                mChips.put(id, grown);
+            }
+        }
+
+        /* Must hold the lock */
+        void remove(Chip chip) {
+            final Object id = chip.getId();
+            if (id == null) { return; }
+
+            final Object found = mChips.get(id);
+            if (found == chip) {
+                mChips.remove(id);
+            } else if (found instanceof Chip[]) {
+                final Chip[] chips = (Chip[])found;
+                int index = 0;
+                while (index < chips.length && chips[index] != chip) {
+                    index++;
+                }
+                if (index == chips.length) { return; }
+
+                if (chips.length == 2) {
+                    mChips.put(id, chips[1 - index]);
+                } else {
+                    final Chip[] shrunk = new Chip[chips.length - 1];
+                    System.arraycopy(chips, 0, shrunk, 0, index);
+                    System.arraycopy(chips, index + 1, shrunk, index, shrunk.length - index);
+                    mChips.put(id, shrunk);
+                }
+            }
+        }
+
+        /* Must hold the lock */
+        void clear() {
+            mChips.clear();
+        }
+
+        /**
+         * Gets the first added chip with the given ID, which is in any of the lists
+         * of the given flags.
+         */
+        Chip get(Object id, int flags) {
+            if (id == null) { return null; }
+
+            final Object found = mChips.get(id);
+            if (found instanceof Chip) {
+                return isMarked((Chip)found, flags) ? (Chip)found : null;
+            } else if (found != null) {
+                for (Chip chip : (Chip[])found) {
+                    if (isMarked(chip, flags)) {
+                        return chip;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the first added chip with each of the given IDs, in the order of the
+         * IDs, skipping any IDs that no chip has.
+         */
+        List<Chip> getAll(Collection<?> ids, int flags) {
+            if (ids == null) {
+                throw new NullPointerException("IDs cannot be null!");
+            }
+
+            final List<Chip> chips = new ArrayList<>(ids.size());
+            for (Object id : ids) {
+                final Chip chip = get(id, flags);
+                if (chip != null) {
+                    chips.add(chip);
+                }
+            }
+            return chips;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipMatcher} where a chip matches if its lower-cased title,
+ * or its lower-cased and whitespace-stripped subtitle, contains the lower-cased
+ * constraint; accents can optionally be folded too, so that "jose" matches "José". The
+ * normalized keys are cached by each chip, see {@link ChipSearchKeys}, so nothing is
+ * allocated per chip.
+ *
+ * With a search index, only the chips containing every trigram of the constraint
+ * (or the constraint itself, if it's shorter) are checked.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ContainsChipMatcher implements ChipMatcher {
+    /* True if accents are folded when matching */
+    private final boolean mFoldAccents;
+
+
+    /* Construct without folding accents */
+    public ContainsChipMatcher() {
+        this(false);
+    }
+
+    public ContainsChipMatcher(boolean foldAccents) {
+        mFoldAccents = foldAccents;
+    }
+
+    @Override
+    public Query compile(CharSequence constraint) {
+        final String pattern = ChipSearchKeys.normalizeQuery(constraint, mFoldAccents);
+        final boolean folded = mFoldAccents;
+        return new IndexedQuery() {
+            @Override
+            public boolean matches(Chip chip) {
+                return chip.getSearchKeys().matches(pattern, folded);
+            }
+
+            @Override
+            public List<Chip> findCandidates(ChipSearchIndex index) {
+                if (pattern.length() == 0) {
+                    return null;
+                }
+                final int gramLength = Math.min(pattern.length(), 3);
+                return index.searchGrams(pattern, folded, gramLength,
+                        pattern.length() - gramLength + 1);
+            }
+        };
+    }
+
+    @Override
+    public boolean canRefine(CharSequence prefix, CharSequence constraint) {
+        return true; // Anything containing the constraint contains its prefix too
+    }
+}
@@ -1,6 +1,7 @@
 package com.tylersuehr.chips;
 
 import android.graphics.PorterDuff;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -9,6 +10,8 @@ import android.view.ViewGroup;
 import android.widget.Filter;
 import android.widget.Filterable;
 import android.widget.TextView;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -27,11 +30,31 @@ import android.widget.TextView;
  */
 class FilterableChipsAdapter
         extends RecyclerView.Adapter<FilterableChipsAdapter.Holder>
-        implements Filterable, ChipDataSource.ChangeObserver {
+        implements Filterable, ChipDataSource.ListChangeObserver {
     private final OnFilteredChipClickListener mListener;
-    private final ChipDataSource mDataSource;
+    private volatile ChipDataSource mDataSource;
     private final ChipOptions mOptions;
     private ChipFilter mFilter;
+    /* Ranks the filtered chips, if enabled, and counts the chips selected */
+    private final ChipRanker mRanker = new ChipRanker();
+    /* Changes whenever the data source changes, so earlier filter hits can be dropped */
+    private volatile int mDataVersion;
+    /* Changes whenever filtering is requested, so stale filtering can be cancelled */
+    private volatile int mFilterGeneration;
+    /* Original chips, and the data version, when filtering was last requested */
+    private volatile Originals mOriginals;
+
+    /* Latest filtering request, used to filter again if the data source changes meanwhile */
+    private String mLatestConstraint;
+    private Filter.FilterListener mLatestListener;
+    /* Most filtered chips to publish for the latest constraint, or zero for all of them */
+    private volatile int mResultLimit;
+    /* True if more chips match the latest constraint than were published */
+    private boolean mHasMoreChips;
+    /* Snapshot being displayed, used to diff the next snapshot; null if unknown */
+    private volatile List<Chip> mPublished;
+    /* True if original chips were inserted by the change being dispatched */
+    private boolean mRefilterPending;
 
 
     FilterableChipsAdapter(ChipDataSource chipDataSource,
@@ -45,6 +68,15 @@ class FilterableChipsAdapter
         mDataSource.addChangedObserver(this);
     }
 
+    /**
+     * Changes the data source of the chips, which must already have this
+     * adapter as a change observer.
+     */
+    void changeDataSource(ChipDataSource dataSource) {
+        mDataSource = dataSource;
+        onChipDataSourceChanged();
+    }
+
     @Override
     public int getItemCount() {
         return mDataSource.getFilteredChips().size();
@@ -60,6 +92,14 @@ class FilterableChipsAdapter
     @Override
     public void onBindViewHolder(Holder holder, int position) {
         final Chip chip = mDataSource.getFilteredChip(position);
+        if (chip == null) {
+            // The provider of a paged data source couldn't load this chip, so
+            // bind an empty row in its place
+            holder.image.setImageDrawable(null);
+            holder.title.setText(null);
+            holder.subtitle.setVisibility(View.GONE);
+            return;
+        }
 
         // Set the chip avatar, if possible
         mOptions.mImageRenderer.renderAvatar(holder.image, chip);
@@ -96,9 +136,124 @@ class FilterableChipsAdapter
         return mFilter;
     }
 
+    /**
+     * Filters the chips using the given constraint, and cancels any filtering
+     * that's still in progress for an older constraint.
+     *
+     * The listener receives a negative count if the filtering was cancelled.
+     *
+     * @param constraint Text the user has typed
+     * @param listener {@link Filter.FilterListener}
+     */
+    void filterChips(CharSequence constraint, Filter.FilterListener listener) {
+        final String text = constraint.toString();
+        if (!text.equals(mLatestConstraint)) {
+            mResultLimit = getPageSize();
+        }
+
+        // The worker thread only reads this snapshot, never the data source lists
+        mOriginals = new Originals(
+                ChipDataSources.getOriginalChipsSnapshot(mDataSource), mDataVersion);
+        mFilterGeneration++;
+        mLatestConstraint = text;
+        mLatestListener = listener;
+        getFilter().filter(constraint, listener);
+    }
+
+    /**
+     * Publishes more of the chips matching the latest constraint, if it has any
+     * more than were published; up to the max results again.
+     */
+    void loadMoreChips() {
+        final int pageSize = getPageSize();
+        if (!mHasMoreChips || pageSize <= 0) { return; }
+
+        // Only load more once, until the next results are published
+        mHasMoreChips = false;
+        mResultLimit += pageSize;
+        refilter();
+    }
+
+    /**
+     * Gets the most filtered chips to publish at once, or zero for all of them.
+     *
+     * Ranking keeps only the best chips in a bounded heap, so it always publishes
+     * some at once; without a max results option, that many more are ranked each
+     * time more are loaded, so every hit can still be reached.
+     */
+    private int getPageSize() {
+        return (mOptions.mFilterMaxResults <= 0 && mOptions.mRankFilteredChips)
+                ? ChipRanker.DEFAULT_MAX_RESULTS : mOptions.mFilterMaxResults;
+    }
+
+    /**
+     * Forgets the latest constraint, once the user has removed it, and cancels
+     * any filtering that's still in progress.
+     */
+    void clearFilter() {
+        mFilterGeneration++;
+        mLatestConstraint = null;
+        mLatestListener = null;
+        mHasMoreChips = false;
+    }
+
     @Override
     public void onChipDataSourceChanged() {
+        mDataVersion++;
+        mPublished = null;
         notifyDataSetChanged();
+        refilter();
+    }
+
+    @Override
+    public void onChipsInserted(int list, int position, int count) {
+        mDataVersion++;
+        if (list == ChipDataSource.FILTERED) {
+            mPublished = null;
+            notifyItemRangeInserted(position, count);
+        } else if (list == ChipDataSource.ORIGINAL) {
+            mRefilterPending = true;
+        }
+    }
+
+    @Override
+    public void onChipsRemoved(int list, int position, int count) {
+        mDataVersion++;
+        if (list == ChipDataSource.FILTERED) {
+            mPublished = null;
+            notifyItemRangeRemoved(position, count);
+        }
+    }
+
+    @Override
+    public void onChipMoved(int list, int fromPosition, int toPosition) {
+        mDataVersion++;
+        if (list == ChipDataSource.FILTERED) {
+            mPublished = null;
+            notifyItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    @Override
+    public void onChipChangesFinished() {
+        // Filter once for all the chips inserted by the change, like a chunk
+        // of streamed chips, which can be many runs of inserted chips
+        if (mRefilterPending) {
+            mRefilterPending = false;
+            refilter();
+        }
+    }
+
+
+    /**
+     * Filters the chips again using the latest constraint, if there is one, so that
+     * chips added to the original chips (like while they're still being loaded) are
+     * only displayed if they match it.
+     */
+    private void refilter() {
+        if (!TextUtils.isEmpty(mLatestConstraint)) {
+            filterChips(mLatestConstraint, mLatestListener);
+        }
     }
 
 
@@ -127,7 +282,9 @@ class FilterableChipsAdapter
             if (index >= 0 && index < getItemCount()) {
                 // Take the chip from the filtered chip list
                 final Chip chip = mDataSource.getFilteredChip(getAdapterPosition());
+                if (chip == null) { return; } // Empty row of a chip that couldn't load
                 mDataSource.takeChip(chip);
+                mRanker.recordSelection(chip);
 
                 // Trigger callback with the clicked chip
                 mListener.onFilteredChipClick(chip);
@@ -147,41 +304,231 @@ class FilterableChipsAdapter
     /**
      * Concrete implementation of {@link Filter} to help us mFilter our list of filterable chips.
      *
-     * This works by cloning the list of filterable chips, so that the original filterable chips
-     * list is retained, and then inclusively filtering the data source filterable chips list.
+     * This works by finding the matching chips on the worker thread of {@link Filter}, and
+     * collecting them into an immutable snapshot, without modifying the data source. The
+     * original chips are read from an immutable snapshot too, taken on the main thread when
+     * filtering is requested. If the data source has a {@link ChipSearchIndex}, it's used
+     * to find the matching chips.
+     *
+     * Chips are matched using the {@link ChipMatcher} option, if there is one; otherwise,
+     * the search index is used, or chips containing the constraint are matched. The query
+     * of a matcher may also use the search index to find the chips it could match, see
+     * {@link ChipMatcher.IndexedQuery}, so that only those are checked.
+     *
+     * When the user keeps typing, the new constraint extends the previous one, so only
+     * the previous hits are filtered again. A few earlier constraints and their hits are
+     * kept too, so that removing typed characters doesn't have to filter at all.
+     *
+     * Once the snapshot is ready, it's published on the main thread by replacing the data
+     * source filtered chips with it. The snapshot is diffed, on the worker thread, against
+     * the one being displayed, so that the adapter only notifies the rows that were
+     * inserted, removed, moved, or changed; very large snapshots notify data set changes.
+     *
+     * If a newer constraint was requested meanwhile, the filtering is cancelled and its
+     * snapshot is dropped; so a burst of keystrokes only completes one search.
      *
-     * Once the data source filterable chips list is filtered, the adapter will notify data
-     * set changes have happened.
+     * If there's a max results option, only that many hits are published, and more of them are
+     * published when the user scrolls to the end; without ranking, looking for hits stops
+     * once that many have been found.
+     *
+     * If ranking is enabled, only the best hits are published, from best to worst, using
+     * {@link ChipRanker}; more of them are ranked when the user scrolls to the end, even
+     * without a max results option.
      *
      * If the user removes the mFilter (removing all the typed characters), the original list
-     * of filterable chips will be added back into the data source filterable chips.
+     * of filterable chips will be used as the filtered chips again.
      */
     private final class ChipFilter extends Filter {
+        /* Most chips, in both snapshots, that are diffed instead of refreshing every row */
+        private static final int MAX_DIFF_SIZE = 5000;
+
+        /* Finds the hits of each constraint, keeping those of earlier constraints */
+        private final ChipFinder mFinder = new ChipFinder();
+
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
-            FilterResults results = new FilterResults();
+            final int generation = mFilterGeneration;
+            final Originals originals = mOriginals;
+            final int limit = mResultLimit;
+            final List<Chip> base = mPublished;
+            if (originals == null) {
+                return null; // Only filtered using filterChips()
+            }
+            final int version = originals.version;
+
+            final ChipSearchIndex index = ChipDataSources.getSearchIndex(mDataSource);
+            final ChipFinder.Cancellation cancellation = new ChipFinder.Cancellation() {
+                @Override
+                public boolean isCancelled() {
+                    return generation != mFilterGeneration;
+                }
+            };
+            mFinder.setMatcher(mOptions.mChipMatcher, mOptions.mFoldAccents);
+            mFinder.setSearchIndex(index);
 
-            mDataSource.getFilteredChips().clear();
+            List<Chip> chips;
+            boolean truncated = false;
             if (TextUtils.isEmpty(constraint)) {
-                mDataSource.getFilteredChips().addAll(mDataSource.getOriginalChips());
+                // Without an index, publish the snapshot of the original chips itself,
+                // since copying it could load all of them (see PagedChipDataSource)
+                chips = (index != null) ? index.search("") : originals.chips;
+            } else if (mOptions.mRankFilteredChips) {
+                // Ranking needs all the hits, but only keeps the best of them
+                final ChipFinder.Refinement hits = mFinder.findChips(constraint.toString(),
+                        originals.chips, version, 0, cancellation);
+                chips = (hits != null) ? rankChips(hits.hits, constraint, limit) : null;
+                truncated = (chips != null && chips.size() < hits.hits.size());
             } else {
-                final String pattern = constraint.toString().toLowerCase().trim();
-                for (Chip chip : mDataSource.getOriginalChips()) {
-                    if (chip.getTitle().toLowerCase().contains(pattern)
-                            || (chip.getSubtitle() != null && chip.getSubtitle().toLowerCase().replaceAll("\\s", "").contains(pattern))) {
-                        mDataSource.getFilteredChips().add(chip);
-                    }
+                // The limit may be left from ranking, which publishes some chips at once
+                final int pageLimit = (mOptions.mFilterMaxResults > 0) ? limit : 0;
+                final ChipFinder.Refinement hits = mFinder.findChips(constraint.toString(),
+                        originals.chips, version, pageLimit, cancellation);
+                chips = (hits != null) ? hits.hits : null;
+                if (chips != null && pageLimit > 0 && chips.size() > pageLimit) {
+                    chips = new ArrayList<>(chips.subList(0, pageLimit));
+                    truncated = true;
+                } else {
+                    truncated = (hits != null && !hits.isComplete());
                 }
             }
 
-            results.values = mDataSource.getFilteredChips();
-            results.count = mDataSource.getFilteredChips().size();
+            // Nothing to publish if a newer constraint was requested
+            if (chips == null || generation != mFilterGeneration) {
+                return null;
+            }
+
+            // Diff against the displayed snapshot here, so only the changed rows get updated
+            DiffUtil.DiffResult diff = null;
+            if (base != null && base.size() + chips.size() <= MAX_DIFF_SIZE) {
+                diff = DiffUtil.calculateDiff(new ChipDiffCallback(base, chips));
+                if (generation != mFilterGeneration) {
+                    return null;
+                }
+            }
+
+            FilterResults results = new FilterResults();
+            results.values = new Snapshot(chips, generation, version, base, diff, truncated);
+            results.count = chips.size();
             return results;
         }
 
         @Override
         protected void publishResults(CharSequence constraint, FilterResults results) {
-            notifyDataSetChanged();
+            if (results == null) { return; }
+
+            final Snapshot snapshot = (Snapshot)results.values;
+            if (snapshot.generation != mFilterGeneration) {
+                results.count = -1; // Stale, a newer constraint is being filtered
+                return;
+            }
+            if (snapshot.version != mDataVersion) {
+                // The data source changed while filtering, so filter it again
+                results.count = -1;
+                filterChips(mLatestConstraint, mLatestListener);
+                return;
+            }
+
+            ChipDataSources.updateFilteredChips(mDataSource, snapshot.chips);
+            final boolean diffable = (snapshot.diff != null && snapshot.base == mPublished);
+            mPublished = snapshot.chips;
+            mHasMoreChips = snapshot.truncated;
+            if (diffable) {
+                snapshot.diff.dispatchUpdatesTo(FilterableChipsAdapter.this);
+            } else {
+                notifyDataSetChanged();
+            }
+        }
+
+        /**
+         * Ranks the given hits, keeping only the best of them; the unranked hits
+         * are kept for refining, since a chip's rank changes with the constraint.
+         */
+        private List<Chip> rankChips(List<Chip> hits, CharSequence constraint, int limit) {
+            mRanker.setFrequencyBoost(mOptions.mBoostFrequentChips);
+            return mRanker.rank(hits, constraint,
+                    (limit > 0) ? limit : ChipRanker.DEFAULT_MAX_RESULTS);
+        }
+    }
+
+
+    /**
+     * Immutable result of filtering, published on the main thread.
+     */
+    private static final class Snapshot {
+        final List<Chip> chips;
+        final int generation;
+        final int version;
+        /* Snapshot the diff was calculated against */
+        final List<Chip> base;
+        final DiffUtil.DiffResult diff;
+        /* True if more chips match than were kept */
+        final boolean truncated;
+
+        Snapshot(List<Chip> chips, int generation, int version,
+                 List<Chip> base, DiffUtil.DiffResult diff, boolean truncated) {
+            this.chips = chips;
+            this.generation = generation;
+            this.version = version;
+            this.base = base;
+            this.diff = diff;
+            this.truncated = truncated;
+        }
+    }
+
+
+    /**
+     * Immutable snapshot of the original chips, with the data version it was taken at.
+     */
+    private static final class Originals {
+        final List<Chip> chips;
+        final int version;
+
+        Originals(List<Chip> chips, int version) {
+            this.chips = chips;
+            this.version = version;
+        }
+    }
+
+
+    /**
+     * Implementation of {@link DiffUtil.Callback} to find the rows that changed between
+     * two snapshots, where chips are the same item if they have the same ID.
+     */
+    private static final class ChipDiffCallback extends DiffUtil.Callback {
+        private final List<Chip> mOld;
+        private final List<Chip> mNew;
+
+        ChipDiffCallback(List<Chip> oldChips, List<Chip> newChips) {
+            mOld = oldChips;
+            mNew = newChips;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            final Chip oldChip = mOld.get(oldPosition);
+            final Chip newChip = mNew.get(newPosition);
+            if (oldChip == newChip) {
+                return true;
+            }
+            return oldChip.getId() != null && oldChip.getId().equals(newChip.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            final Chip oldChip = mOld.get(oldPosition);
+            final Chip newChip = mNew.get(newPosition);
+            return TextUtils.equals(oldChip.getTitle(), newChip.getTitle())
+                    && TextUtils.equals(oldChip.getSubtitle(), newChip.getSubtitle());
         }
     }
 }
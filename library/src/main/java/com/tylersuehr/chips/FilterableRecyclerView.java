@@ -10,7 +10,6 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.AlphaAnimation;
 import android.widget.Filter;
-import android.widget.Filterable;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -26,10 +25,13 @@ import android.widget.Filterable;
  * @version 1.0
  */
 class FilterableRecyclerView extends RecyclerView implements ChipComponent {
+    /* Count of rows from the end that loads more filtered chips once visible */
+    private static final int LOAD_MORE_THRESHOLD = 5;
+
     /* Used to find its location in window */
     private ChipsInputLayout mChipsInput;
     /* Used to trigger filtering and receive callbacks to show or hide this */
-    private Filter mFilter;
+    private FilterableChipsAdapter mFilterableAdapter;
 
 
     FilterableRecyclerView(Context c) {
@@ -48,11 +50,24 @@ class FilterableRecyclerView extends RecyclerView implements ChipComponent {
         }
     }
 
-    <T extends RecyclerView.Adapter & Filterable>
-    void setup(T adapter, ChipsInputLayout chipsInputLayout) {
+    void setup(FilterableChipsAdapter adapter, ChipsInputLayout chipsInputLayout) {
         setAdapter(adapter);
-        mFilter = adapter.getFilter();
+        mFilterableAdapter = adapter;
         mChipsInput = chipsInputLayout;
+
+        // Load more filtered chips when scrolling near the end of them
+        addOnScrollListener(new OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) { return; }
+
+                final LinearLayoutManager lm = (LinearLayoutManager)getLayoutManager();
+                if (lm.findLastVisibleItemPosition()
+                        >= mFilterableAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    mFilterableAdapter.loadMoreChips();
+                }
+            }
+        });
     }
 
     /**
@@ -63,9 +78,12 @@ class FilterableRecyclerView extends RecyclerView implements ChipComponent {
      */
     void filterChips(CharSequence filter) {
         if (filter != null) {
-            mFilter.filter(filter, new Filter.FilterListener() {
+            mFilterableAdapter.filterChips(filter, new Filter.FilterListener() {
                 @Override
                 public void onFilterComplete(int count) {
+                    // Ignore cancelled filtering, a newer filter is coming
+                    if (count < 0) { return; }
+
                     // Show if, and only if, there are results
                     if (count > 0) {
                         fadeIn();
@@ -0,0 +1,292 @@
+package com.tylersuehr.chips;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipMatcher} that tolerates typos: a chip matches if its
+ * lower-cased title, or its lower-cased and whitespace-stripped subtitle, contains
+ * the lower-cased constraint with only a few edits; where an edit inserts, removes,
+ * or replaces a character, or swaps two adjacent characters. Accents can optionally
+ * be folded too.
+ *
+ * The edits allowed grow with the length of the constraint, up to the given max:
+ * none for less than {@link #ONE_EDIT_LENGTH} characters, one for less than
+ * {@link #TWO_EDITS_LENGTH} characters, and two otherwise.
+ *
+ * Edits are counted by the bit-parallel algorithm of Myers, extended to swaps by Hyyrö:
+ * each character of a chip updates the edits of every prefix of the constraint at
+ * once, as bits of a long, so a chip costs a few operations per character. Constraints
+ * longer than {@link #MAX_BIT_PARALLEL_LENGTH} use a dynamic program instead.
+ *
+ * With a {@link ChipSearchIndex}, the chips that could match are found without looking
+ * at the others: an edit changes at most n + 1 of the grams of length n in the constraint,
+ * so a chip matching with the max edits still has all but that many of them; which the
+ * index counts using its posting lists, see {@link ChipSearchIndex#searchGrams}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class FuzzyChipMatcher implements ChipMatcher {
+    /* Shortest constraints allowing one, and two, edits */
+    public static final int ONE_EDIT_LENGTH = 3;
+    public static final int TWO_EDITS_LENGTH = 6;
+    public static final int DEFAULT_MAX_EDITS = 2;
+    /* Longest constraint whose edits fit in the bits of a long */
+    public static final int MAX_BIT_PARALLEL_LENGTH = 64;
+
+    /* Most edits allowed for any constraint */
+    private final int mMaxEdits;
+    /* True if accents are folded when matching */
+    private final boolean mFoldAccents;
+
+
+    /* Construct allowing up to two edits, without folding accents */
+    public FuzzyChipMatcher() {
+        this(DEFAULT_MAX_EDITS, false);
+    }
+
+    public FuzzyChipMatcher(int maxEdits, boolean foldAccents) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Max edits cannot be negative!");
+        }
+        mMaxEdits = maxEdits;
+        mFoldAccents = foldAccents;
+    }
+
+    @Override
+    public Query compile(CharSequence constraint) {
+        final String pattern = ChipSearchKeys.normalizeQuery(constraint, mFoldAccents);
+        return new FuzzyQuery(pattern, getMaxEdits(pattern.length()), mFoldAccents);
+    }
+
+    @Override
+    public boolean canRefine(CharSequence prefix, CharSequence constraint) {
+        // A chip matching the constraint matches its prefix with the same edits,
+        // but not if the constraint is long enough to allow more of them
+        return getMaxEdits(prefix.toString().trim().length())
+                == getMaxEdits(constraint.toString().trim().length());
+    }
+
+    /**
+     * Makes a matcher allowing the same edits as this one, which folds accents
+     * or not as given.
+     */
+    FuzzyChipMatcher withFoldAccents(boolean foldAccents) {
+        return (foldAccents == mFoldAccents) ? this : new FuzzyChipMatcher(mMaxEdits, foldAccents);
+    }
+
+    /**
+     * Gets the most edits allowed for a constraint of the given length.
+     */
+    private int getMaxEdits(int length) {
+        final int edits = (length < ONE_EDIT_LENGTH) ? 0 : (length < TWO_EDITS_LENGTH) ? 1 : 2;
+        return Math.min(edits, mMaxEdits);
+    }
+
+    /**
+     * Gets the least count of grams of the given length that a chip must share with
+     * a pattern to match it with the given edits. An edit changes the grams holding
+     * the characters it changes; swapping two characters changes one more of them,
+     * except for single characters, which are still there.
+     */
+    static int getMinSharedGrams(int patternLength, int gramLength, int edits) {
+        final int changedByEdit = (gramLength == 1) ? 1 : gramLength + 1;
+        return (patternLength - gramLength + 1) - changedByEdit * edits;
+    }
+
+
+    /**
+     * Compiled query of a constraint, which reuses its buffers for every chip;
+     * so it must only be used by one thread.
+     */
+    private static final class FuzzyQuery implements IndexedQuery {
+        /* Longest grams counted by the search index */
+        private static final int MAX_GRAM = 3;
+
+        private final String mPattern;
+        private final int mMaxEdits;
+        private final boolean mFolded;
+
+        /* Bits of the positions of each character in the pattern, for bit-parallel matching */
+        private final long[] mAsciiMasks;
+        private char[] mOtherChars;
+        private long[] mOtherMasks;
+        private int mOtherCount;
+
+        /* Last three columns of the edit distances, for long patterns */
+        private int[] mBefore;
+        private int[] mPrevious;
+        private int[] mCurrent;
+
+
+        FuzzyQuery(String pattern, int maxEdits, boolean folded) {
+            mPattern = pattern;
+            mMaxEdits = maxEdits;
+            mFolded = folded;
+
+            final int length = pattern.length();
+            if (length <= MAX_BIT_PARALLEL_LENGTH) {
+                mAsciiMasks = new long[128];
+                for (int i = 0; i < length; i++) {
+                    final char c = pattern.charAt(i);
+                    if (c < 128) {
+                        mAsciiMasks[c] |= 1L << i;
+                    } else {
+                        addOtherMask(c, 1L << i);
+                    }
+                }
+            } else {
+                mAsciiMasks = null;
+                mBefore = new int[length + 1];
+                mPrevious = new int[length + 1];
+                mCurrent = new int[length + 1];
+            }
+        }
+
+        /**
+         * Counts the longest grams that a match must still share some of; unless the
+         * pattern is too short for that, then the characters it must share.
+         */
+        @Override
+        public List<Chip> findCandidates(ChipSearchIndex index) {
+            final int length = mPattern.length();
+            for (int gram = Math.min(MAX_GRAM, length); gram > 1; gram--) {
+                final int minShared = getMinSharedGrams(length, gram, mMaxEdits);
+                if (minShared > 1 || (minShared == 1 && gram == length)) {
+                    return index.searchGrams(mPattern, mFolded, gram, minShared);
+                }
+            }
+            final int minShared = getMinSharedGrams(length, 1, mMaxEdits);
+            return (minShared > 0) ? index.searchGrams(mPattern, mFolded, 1, minShared) : null;
+        }
+
+        @Override
+        public boolean matches(Chip chip) {
+            final ChipSearchKeys keys = chip.getSearchKeys();
+            if (mMaxEdits == 0 || mPattern.length() == 0) {
+                return keys.matches(mPattern, mFolded);
+            }
+            return matchesWithEdits(mFolded ? keys.foldedTitleKey : keys.titleKey)
+                    || matchesWithEdits(mFolded ? keys.foldedSubtitleKey : keys.subtitleKey);
+        }
+
+        /**
+         * Checks if the given text contains the pattern, with at most the max edits.
+         */
+        private boolean matchesWithEdits(String text) {
+            final int m = mPattern.length();
+            final int n = text.length();
+            if (n + mMaxEdits < m) {
+                return false;
+            }
+            return (mAsciiMasks != null) ? matchesBitParallel(text) : matchesDynamic(text);
+        }
+
+        /**
+         * Keeps the differences between the edits of adjacent prefixes of the pattern
+         * as bits, positive in {@code up} and negative in {@code down}, while only
+         * counting the edits of the whole pattern. A match can begin anywhere in the
+         * text, so no carry comes in from the empty prefix.
+         */
+        private boolean matchesBitParallel(String text) {
+            final long last = 1L << (mPattern.length() - 1);
+            long up = -1L;
+            long down = 0;
+            long zero = 0; // Diagonals that didn't change
+            long previousEq = 0;
+            int edits = mPattern.length();
+
+            for (int j = 0, n = text.length(); j < n; j++) {
+                final long eq = getMask(text.charAt(j));
+                final long swapped = (((~zero) & eq) << 1) & previousEq;
+                zero = (((eq & up) + up) ^ up) | eq | swapped | down;
+
+                final long hUp = down | ~(zero | up);
+                final long hDown = zero & up;
+                if ((hUp & last) != 0) {
+                    edits++;
+                } else if ((hDown & last) != 0) {
+                    edits--;
+                }
+                if (edits <= mMaxEdits) {
+                    return true;
+                }
+
+                final long shifted = hUp << 1;
+                down = shifted & zero;
+                up = (hDown << 1) | ~(shifted | zero);
+                previousEq = eq;
+            }
+            return false;
+        }
+
+        /**
+         * Counts edits column by column, for patterns too long for bit-parallel matching.
+         */
+        private boolean matchesDynamic(String text) {
+            final String pattern = mPattern;
+            final int m = pattern.length();
+            final int n = text.length();
+
+            // Edits of the pattern against text ending at each position; a match can
+            // begin anywhere in the text, so the first row is always zero
+            for (int i = 0; i <= m; i++) {
+                mPrevious[i] = i;
+            }
+            for (int j = 1; j <= n; j++) {
+                final char c = text.charAt(j - 1);
+                mCurrent[0] = 0;
+                for (int i = 1; i <= m; i++) {
+                    final char p = pattern.charAt(i - 1);
+                    int edits = Math.min(mPrevious[i] + 1, mCurrent[i - 1] + 1);
+                    edits = Math.min(edits, mPrevious[i - 1] + ((p == c) ? 0 : 1));
+                    if (i > 1 && j > 1 && p == text.charAt(j - 2) && pattern.charAt(i - 2) == c) {
+                        edits = Math.min(edits, mBefore[i - 2] + 1);
+                    }
+                    mCurrent[i] = edits;
+                }
+                if (mCurrent[m] <= mMaxEdits) {
+                    return true;
+                }
+
+                final int[] before = mBefore;
+                mBefore = mPrevious;
+                mPrevious = mCurrent;
+                mCurrent = before;
+            }
+            return false;
+        }
+
+        private long getMask(char c) {
+            if (c < 128) {
+                return mAsciiMasks[c];
+            }
+            for (int i = 0; i < mOtherCount; i++) {
+                if (mOtherChars[i] == c) {
+                    return mOtherMasks[i];
+                }
+            }
+            return 0;
+        }
+
+        private void addOtherMask(char c, long bit) {
+            for (int i = 0; i < mOtherCount; i++) {
+                if (mOtherChars[i] == c) {
+                    mOtherMasks[i] |= bit;
+                    return;
+                }
+            }
+            if (mOtherChars == null) {
+                mOtherChars = new char[4];
+                mOtherMasks = new long[4];
+            } else if (mOtherCount == mOtherChars.length) {
+                mOtherChars = Arrays.copyOf(mOtherChars, mOtherCount << 1);
+                mOtherMasks = Arrays.copyOf(mOtherMasks, mOtherCount << 1);
+            }
+            mOtherChars[mOtherCount] = c;
+            mOtherMasks[mOtherCount++] = bit;
+        }
+    }
+}
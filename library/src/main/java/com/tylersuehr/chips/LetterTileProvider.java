@@ -13,6 +13,7 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.support.v4.content.ContextCompat;
 import android.text.TextPaint;
+import android.util.LruCache;
 
 /**
  * Copyright © Tyler Suehr
@@ -25,6 +26,15 @@ import android.text.TextPaint;
  * (1) {@link #getLetterTile(String)}, and
  * (2) {@link #getCircularLetterTile(String)}
  *
+ * There are only a few distinct tiles for each size, one for each letter or digit and
+ * color, so tiles are cached by their letter, color, size, and shape; and the same
+ * immutable Bitmap is returned for every name that has the same tile. The cache is
+ * bounded by the bytes of its bitmaps, and cleared when the typeface, colors, or
+ * default image change.
+ *
+ * Tiles are drawn into reused buffers, which are then copied into the immutable tiles;
+ * so each tile drawn allocates only the Bitmap that's cached.
+ *
  * @author Tyler Suehr
  * @version 1.1
  */
@@ -37,10 +47,23 @@ public class LetterTileProvider {
             "#67bf74", "#59a2be", "#2093cd", "#ad62a7"
     };
 
+    /* Most bytes of bitmaps cached, and the part of the max memory they can use */
+    private static final int MAX_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int MEMORY_FRACTION = 32;
+    /* Used in the keys of tiles showing the default image, and of circular tiles */
+    private static final char DEFAULT_GLYPH = 0;
+    private static final long CIRCULAR_FLAG = 1L << 63;
+
     private final TextPaint paint = new TextPaint();
     private final Rect bounds = new Rect();
     private final Canvas canvas = new Canvas();
     private final char[] firstChar = new char[1];
+    private final Paint circlePaint = new Paint();
+    private final PorterDuffXfermode circleMode = new PorterDuffXfermode(PorterDuff.Mode.SRC_IN);
+    /* Reused to draw the tiles, and the circular tiles, at the current tile size */
+    private Bitmap tileBuffer;
+    private Bitmap circleBuffer;
+    private final LruCache<Long, Bitmap> cache;
 
     private String[] colors;
     private Bitmap defaultBitmap;
@@ -54,12 +77,24 @@ public class LetterTileProvider {
         this.paint.setColor(Color.WHITE);
         this.paint.setTextAlign(Paint.Align.CENTER);
         this.paint.setAntiAlias(true);
+        this.circlePaint.setColor(0xff424242);
+        this.circlePaint.setAntiAlias(true);
 
         // Setup the properties
         this.colors = DEFAULT_COLORS;
         this.tileSize = c.getResources().getDimensionPixelSize(R.dimen.default_letter_tile_size);
         this.defaultBitmap = drawableToBitmap(ContextCompat
                 .getDrawable(c, R.drawable.chip_delete_icon_24dp));
+
+        // Setup the cache of tiles
+        final long cacheBytes = Math.min(MAX_CACHE_BYTES,
+                Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        this.cache = new LruCache<Long, Bitmap>((int)cacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
     }
 
     public static LetterTileProvider getInstance(Context c) {
@@ -75,18 +110,45 @@ public class LetterTileProvider {
 
     public void setTypeface(Typeface typeface) {
         this.paint.setTypeface(typeface);
+        clearCache();
     }
 
     public void setColors(String[] colorHexes) {
         this.colors = colorHexes;
+        clearCache();
     }
 
     public void setTileSize(int tileSize) {
+        // Tiles are cached by size, so others stay valid
         this.tileSize = tileSize;
     }
 
     public void setDefaultIcon(Drawable dr) {
         this.defaultBitmap = drawableToBitmap(dr);
+        clearCache();
+    }
+
+    /**
+     * Removes all the cached tiles.
+     */
+    public void clearCache() {
+        this.cache.evictAll();
+    }
+
+    /**
+     * Gets the number of tiles that were found in the cache.
+     * @return Hit count
+     */
+    public int getCacheHitCount() {
+        return cache.hitCount();
+    }
+
+    /**
+     * Gets the number of tiles that weren't found in the cache, and were drawn.
+     * @return Miss count
+     */
+    public int getCacheMissCount() {
+        return cache.missCount();
     }
 
     /**
@@ -94,10 +156,20 @@ public class LetterTileProvider {
      * a circular Bitmap.
      *
      * @param displayName Any string value
-     * @return {@link Bitmap}
+     * @return {@link Bitmap}, shared and immutable
      */
     public Bitmap getCircularLetterTile(String displayName) {
-        return getCircularBitmap(getLetterTile(displayName));
+        // Don't allow empty strings
+        if (displayName == null || displayName.length() == 0) { return null; }
+
+        final Long key = getKey(displayName) | CIRCULAR_FLAG;
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            // The square tile is only drawn into its buffer, not cached
+            bitmap = Bitmap.createBitmap(drawCircularTile(drawLetterTile(displayName)));
+            cache.put(key, bitmap);
+        }
+        return bitmap;
     }
 
     /**
@@ -106,16 +178,31 @@ public class LetterTileProvider {
      * color, picked from {@link #colors}, based on the hashed value of the given string.
      *
      * @param displayName Any string value
-     * @return {@link Bitmap}
+     * @return {@link Bitmap}, shared and immutable
      */
     public Bitmap getLetterTile(String displayName) {
         // Don't allow empty strings
         if (displayName == null || displayName.length() == 0) { return null; }
 
+        final Long key = getKey(displayName);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(drawLetterTile(displayName));
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Draws the tile of the given string, which is never empty, into the tile buffer;
+     * which is overwritten by the next tile drawn.
+     */
+    private Bitmap drawLetterTile(String displayName) {
         final char firstChar = displayName.charAt(0);
 
-        // Create a Bitmap with the width & height specified from resources
-        final Bitmap bitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+        // Reuse the buffer, unless the tile size changed
+        this.tileBuffer = getBuffer(tileBuffer);
+        final Bitmap bitmap = tileBuffer;
 
         // Setup our canvas for drawing
         final Canvas c = canvas;
@@ -147,6 +234,17 @@ public class LetterTileProvider {
         return bitmap;
     }
 
+    /**
+     * Gets the key of the tile of the given string, made of the character it
+     * shows, the index of its color, and its size.
+     */
+    private long getKey(String displayName) {
+        final char firstChar = displayName.charAt(0);
+        final char glyph = Character.isLetterOrDigit(firstChar)
+                ? Character.toUpperCase(firstChar) : DEFAULT_GLYPH;
+        return ((long)tileSize << 32) | ((long)pickColorIndex(displayName) << 16) | glyph;
+    }
+
     /**
      * Randomly picks one of the colors in {@link #colors} using an algorithm based
      * on the hashed value of the given key.
@@ -158,38 +256,47 @@ public class LetterTileProvider {
      * @return {@link android.support.annotation.ColorInt}
      */
     private int pickColor(String key) {
-        final int whichColor = Math.abs(key.hashCode()) % colors.length;
-        return Color.parseColor(colors[whichColor]);
+        return Color.parseColor(colors[pickColorIndex(key)]);
+    }
+
+    private int pickColorIndex(String key) {
+        return Math.abs(key.hashCode()) % colors.length;
     }
 
     /**
-     * Creates a circular Bitmap by drawing a circle and then the given
-     * Bitmap in the center.
+     * Draws the given tile as a circle into the circle buffer, by drawing a circle
+     * and then the tile over it; which is overwritten by the next circle drawn.
      *
-     * @param bitmap {@link Bitmap}
+     * @param tile {@link Bitmap} of the tile size
      * @return {@link Bitmap}
      */
-    private Bitmap getCircularBitmap(Bitmap bitmap) {
-        Bitmap output;
-
-        final int smallestSize = Math.min(bitmap.getWidth(), bitmap.getHeight());
-        output = Bitmap.createBitmap(smallestSize, smallestSize, Bitmap.Config.ARGB_8888);
+    private Bitmap drawCircularTile(Bitmap tile) {
+        this.circleBuffer = getBuffer(circleBuffer);
 
-        Canvas canvas = new Canvas(output);
-
-        final int color = 0xff424242;
-        final Paint paint = new Paint();
-        final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-        float r = smallestSize / 2;
+        final Canvas c = canvas;
+        c.setBitmap(circleBuffer);
+        c.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR); // Erase the last circle
+
+        final float r = tileSize / 2;
+        circlePaint.setXfermode(null);
+        c.drawCircle(r, r, r, circlePaint);
+        circlePaint.setXfermode(circleMode);
+        c.drawBitmap(tile, 0, 0, circlePaint);
+        return circleBuffer;
+    }
 
-        paint.setAntiAlias(true);
-        canvas.drawARGB(0, 0, 0, 0); // Draw the entire bitmap transparent
-        paint.setColor(color);
-        canvas.drawCircle(r, r, r, paint);
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(bitmap, rect, rect, paint);
-        return output;
+    /**
+     * Gets the given buffer if it's of the tile size, or else creates a new one
+     * and recycles the given buffer.
+     */
+    private Bitmap getBuffer(Bitmap buffer) {
+        if (buffer != null && buffer.getWidth() == tileSize) {
+            return buffer;
+        }
+        if (buffer != null) {
+            buffer.recycle();
+        }
+        return Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
     }
 
     /**
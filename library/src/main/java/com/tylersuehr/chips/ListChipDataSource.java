@@ -1,8 +1,12 @@
 package com.tylersuehr.chips;
 import android.support.annotation.VisibleForTesting;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -14,10 +18,18 @@ import java.util.List;
  * @version 1.0
  */
 public class ListChipDataSource extends ObservableChipDataSource {
+    /* Flags of the lists that a chip can be in */
+    private static final int IN_ORIGINAL = 1;
+    private static final int IN_FILTERED = 1 << 1;
+    private static final int IN_SELECTED = 1 << 2;
+
     /* Aggregation of all the original chips */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     List<Chip> mOriginal;
 
+    /* Immutable copy of the original chips, made when first needed after they change */
+    private List<Chip> mOriginalSnapshot;
+
     /* Aggregation of all filtered chips, not selected by the user */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     List<Chip> mFiltered;
@@ -26,12 +38,25 @@ public class ListChipDataSource extends ObservableChipDataSource {
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     List<Chip> mSelected;
 
+    /* Index of the original chips, used to filter them on the filter thread */
+    private volatile ChipSearchIndex mSearchIndex;
+
+    /* Flags of the lists that each chip is in, so membership is O(1) */
+    private final Map<Chip, Integer> mMembership = new HashMap<>();
+    /* True if the filtered chips are sorted by Chip.getComparator() */
+    private boolean mFilteredSorted = true;
+
+    /* Chips stored by their IDs; filtered chips are always original chips too */
+    private final ChipIdMap mOriginalIds = new ChipIdMap();
+    private final ChipIdMap mSelectedIds = new ChipIdMap();
+
 
     /* Construct with all empty lists */
     public ListChipDataSource() {
         mOriginal = new ArrayList<>();
         mFiltered = new ArrayList<>();
         mSelected = new ArrayList<>();
+        mSearchIndex = new TrigramChipSearchIndex();
     }
 
     @Override
@@ -68,6 +93,7 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Instantiate our chip lists with the size of the given list
         mSelected = new ArrayList<>();
         mOriginal = new ArrayList<>(chips.size());
+        mOriginalSnapshot = null;
         mFiltered = new ArrayList<>(chips.size());
 
         // Only copy the data from our chips into the original and filtered lists
@@ -80,23 +106,87 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Sort the lists
         Collections.sort(mOriginal, Chip.getComparator());
         Collections.sort(mFiltered, Chip.getComparator());
+        mFilteredSorted = true;
+
+        // Remember which lists each chip is in
+        mMembership.clear();
+        mOriginalIds.clear();
+        mSelectedIds.clear();
+        for (Chip chip : mOriginal) {
+            mark(chip, IN_ORIGINAL | IN_FILTERED);
+        }
+
+        // Build the search index once for the whole list
+        mSearchIndex.setChips(mOriginal);
 
         // Tell our observers!
         notifyDataSourceChanged();
     }
 
+    @Override
+    public void updateFilteredChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        for (Chip chip : mFiltered) {
+            unmark(chip, IN_FILTERED);
+        }
+
+        // Filtering publishes its own results, so don't notify observers here
+        mFiltered = new ArrayList<>(chips);
+        mFilteredSorted = isSorted(mFiltered);
+        for (Chip chip : mFiltered) {
+            mark(chip, IN_FILTERED);
+        }
+    }
+
     @Override
     public void addFilteredChip(Chip chip) {
         if (chip == null) {
             throw new NullPointerException("Chip cannot be null!");
         }
         chip.setFilterable(true);
-        mOriginal.add(chip);
-        mFiltered.add(chip);
+        insertFilterable(chip);
 
-        // Sort the filterable chips
-        Collections.sort(mOriginal, Chip.getComparator());
-        Collections.sort(mFiltered, Chip.getComparator());
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addFilteredChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        // Sort the batch by itself, so it can be merged in one pass
+        final List<Chip> batch = new ArrayList<>(chips);
+        for (Chip chip : batch) {
+            chip.setFilterable(true);
+            mark(chip, IN_ORIGINAL | IN_FILTERED);
+        }
+        Collections.sort(batch, Chip.getComparator());
+
+        final boolean rebuildIndex = (batch.size() >= mOriginal.size());
+        mOriginal = merge(mOriginal, batch, ORIGINAL);
+        mOriginalSnapshot = null;
+        if (mFilteredSorted) {
+            mFiltered = merge(mFiltered, batch, FILTERED);
+        } else {
+            // Filtering doesn't keep them sorted, so there's nowhere to merge it
+            final int filteredPosition = mFiltered.size();
+            mFiltered.addAll(batch);
+            postChipsInserted(FILTERED, filteredPosition, batch.size());
+        }
+
+        // Rebuilding the index is cheaper than appending most of it
+        if (rebuildIndex) {
+            mSearchIndex.setChips(mOriginal);
+        } else {
+            for (Chip chip : batch) {
+                mSearchIndex.addChip(chip);
+            }
+        }
 
         notifyDataSourceChanged();
     }
@@ -106,11 +196,35 @@ public class ListChipDataSource extends ObservableChipDataSource {
         if (chip == null) {
             throw new NullPointerException("Chip cannot be null!");
         }
-        mSelected.add(chip);
+        addSelected(chip);
+
         notifyDataSourceChanged();
         notifyChipSelected(chip);
     }
 
+    @Override
+    public void addSelectedChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        final int position = mSelected.size();
+        for (Chip chip : chips) {
+            if (chip == null) {
+                throw new NullPointerException("Chip cannot be null!");
+            }
+            mSelected.add(chip);
+            mark(chip, IN_SELECTED);
+        }
+        postChipsInserted(SELECTED, position, mSelected.size() - position);
+
+        notifyDataSourceChanged();
+        for (Chip chip : chips) {
+            notifyChipSelected(chip);
+        }
+    }
+
     @Override
     public void takeChip(Chip chip) {
         if (chip == null) {
@@ -120,10 +234,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Check if chip is filterable
         if (chip.isFilterable()) {
             // Check if chip is actually in the filtered list
-            if (mFiltered.contains(chip)) {
-                mOriginal.remove(chip);
-                mFiltered.remove(chip);
-                mSelected.add(chip);
+            if (isMarked(chip, IN_FILTERED)) {
+                removeFilterable(chip);
+                addSelected(chip);
             } else {
                 throw new IllegalArgumentException("Chip is not in filtered chip list!");
             }
@@ -146,13 +259,13 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Check if chip is filterable
         if (foundChip.isFilterable()) {
             // Since the child isn't null, we know it's in the filtered list
-            mOriginal.remove(foundChip);
-            mFiltered.remove(foundChip);
-            mSelected.add(foundChip);
-        } else {
-            // Just add it to the selected list only
-            mSelected.add(foundChip);
+            // at this position, so it doesn't need to be looked for there
+            mFiltered.remove(position);
+            postChipsRemoved(FILTERED, position, 1);
+            unmark(foundChip, IN_FILTERED);
+            removeFilterable(foundChip);
         }
+        addSelected(foundChip);
 
         notifyDataSourceChanged();
         notifyChipSelected(foundChip);
@@ -165,17 +278,15 @@ public class ListChipDataSource extends ObservableChipDataSource {
         }
 
         // Check if chip is actually selected
-        if (mSelected.contains(chip)) {
-            mSelected.remove(chip);
+        final int position = isMarked(chip, IN_SELECTED) ? mSelected.indexOf(chip) : -1;
+        if (position > -1) {
+            mSelected.remove(position);
+            postChipsRemoved(SELECTED, position, 1);
+            unmark(chip, IN_SELECTED);
 
             // Check if the chip is filterable
             if (chip.isFilterable()) {
-                mFiltered.add(chip);
-                mOriginal.add(chip);
-
-                // Sort the filterable chips
-                Collections.sort(mFiltered, Chip.getComparator());
-                Collections.sort(mOriginal, Chip.getComparator());
+                insertFilterable(chip);
             }
 
             notifyDataSourceChanged();
@@ -194,16 +305,13 @@ public class ListChipDataSource extends ObservableChipDataSource {
         }
 
         // Since not null, we know the chip is selected
-        mSelected.remove(foundChip);
+        mSelected.remove(position);
+        postChipsRemoved(SELECTED, position, 1);
+        unmark(foundChip, IN_SELECTED);
 
         // Check if the chip is filterable
         if (foundChip.isFilterable()) {
-            mFiltered.add(foundChip);
-            mOriginal.add(foundChip);
-
-            // Sort the filterable chips
-            Collections.sort(mFiltered, Chip.getComparator());
-            Collections.sort(mOriginal, Chip.getComparator());
+            insertFilterable(foundChip);
         }
 
         notifyDataSourceChanged();
@@ -212,8 +320,18 @@ public class ListChipDataSource extends ObservableChipDataSource {
 
     @Override
     public void clearFilteredChips() {
+        postChipsRemoved(ORIGINAL, 0, mOriginal.size());
+        postChipsRemoved(FILTERED, 0, mFiltered.size());
+        for (Chip chip : mOriginal) {
+            unmark(chip, IN_ORIGINAL | IN_FILTERED);
+        }
+        for (Chip chip : mFiltered) {
+            unmark(chip, IN_FILTERED);
+        }
         mOriginal.clear();
+        mOriginalSnapshot = null;
         mFiltered.clear();
+        mSearchIndex.clear();
         notifyDataSourceChanged();
     }
 
@@ -223,6 +341,10 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // we need to store a clone of the selected list of chips
         final List<Chip> clone = new ArrayList<>(mSelected);
         mSelected.clear();
+        postChipsRemoved(SELECTED, 0, clone.size());
+        for (Chip chip : clone) {
+            unmark(chip, IN_SELECTED);
+        }
 
         // Let's notify our change observers first (so internal components can
         // instantly get notified of the data source change
@@ -239,7 +361,7 @@ public class ListChipDataSource extends ObservableChipDataSource {
         if (chip == null) {
             throw new NullPointerException("Chip cannot be null!");
         }
-        return mFiltered.contains(chip);
+        return isMarked(chip, IN_FILTERED);
     }
 
     @Override
@@ -247,7 +369,7 @@ public class ListChipDataSource extends ObservableChipDataSource {
         if (chip == null) {
             throw new NullPointerException("Chip cannot be null!");
         }
-        return mSelected.contains(chip);
+        return isMarked(chip, IN_SELECTED);
     }
 
     @Override
@@ -255,8 +377,332 @@ public class ListChipDataSource extends ObservableChipDataSource {
         if (chip == null) {
             throw new NullPointerException("Chip cannot be null!");
         }
-        return (mOriginal.contains(chip)
-                || mFiltered.contains(chip)
-                || mSelected.contains(chip));
+        return mMembership.containsKey(chip);
+    }
+
+    @Override
+    public Chip getSelectedChipById(Object id) {
+        return mSelectedIds.get(id, IN_SELECTED);
+    }
+
+    @Override
+    public Chip getFilteredChipById(Object id) {
+        return mOriginalIds.get(id, IN_FILTERED);
+    }
+
+    @Override
+    public List<Chip> getSelectedChipsByIds(Collection<?> ids) {
+        return mSelectedIds.getAll(ids, IN_SELECTED);
+    }
+
+    @Override
+    public List<Chip> getFilteredChipsByIds(Collection<?> ids) {
+        return mOriginalIds.getAll(ids, IN_FILTERED);
+    }
+
+    /**
+     * Inserts the given chip into the original and filtered chips, keeping
+     * them sorted, and posts where it was inserted; if the filtered chips
+     * aren't sorted, it's appended to them instead.
+     */
+    private void insertFilterable(Chip chip) {
+        mark(chip, IN_ORIGINAL | IN_FILTERED);
+
+        final int originalPosition = insertionPoint(mOriginal, chip);
+        mOriginal.add(originalPosition, chip);
+        mOriginalSnapshot = null;
+        postChipsInserted(ORIGINAL, originalPosition, 1);
+
+        final int filteredPosition = mFilteredSorted
+                ? insertionPoint(mFiltered, chip) : mFiltered.size();
+        mFiltered.add(filteredPosition, chip);
+        postChipsInserted(FILTERED, filteredPosition, 1);
+
+        mSearchIndex.addChip(chip);
+    }
+
+    /**
+     * Binary searches for the position to insert the given chip into the given
+     * sorted list, which is after any chips that compare equal to it.
+     */
+    static int insertionPoint(List<Chip> chips, Chip chip) {
+        final Comparator<Chip> comparator = Chip.getComparator();
+        int low = 0;
+        int high = chips.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (comparator.compare(chips.get(mid), chip) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Merges the given sorted batch into the given sorted list in one pass, and
+     * posts where each run of the batch was inserted.
+     */
+    private List<Chip> merge(List<Chip> chips, List<Chip> batch, int list) {
+        final Comparator<Chip> comparator = Chip.getComparator();
+        final List<Chip> merged = new ArrayList<>(chips.size() + batch.size());
+
+        int i = 0;
+        int j = 0;
+        while (j < batch.size()) {
+            // Copy the chips that come before the next chip in the batch
+            while (i < chips.size() && comparator.compare(chips.get(i), batch.get(j)) <= 0) {
+                merged.add(chips.get(i++));
+            }
+
+            // Copy the run of the batch that comes before the next chip
+            final int runStart = merged.size();
+            do {
+                merged.add(batch.get(j++));
+            } while (j < batch.size() && (i == chips.size()
+                    || comparator.compare(chips.get(i), batch.get(j)) > 0));
+            postChipsInserted(list, runStart, merged.size() - runStart);
+        }
+        while (i < chips.size()) {
+            merged.add(chips.get(i++));
+        }
+        return merged;
+    }
+
+    /**
+     * Removes the given chip from the original and filtered chips, and
+     * posts where it was removed from.
+     */
+    private void removeFilterable(Chip chip) {
+        if (isMarked(chip, IN_ORIGINAL)) {
+            final int originalPosition = positionOf(mOriginal, chip, true);
+            if (originalPosition > -1) {
+                mOriginal.remove(originalPosition);
+                mOriginalSnapshot = null;
+                postChipsRemoved(ORIGINAL, originalPosition, 1);
+            }
+        }
+
+        if (isMarked(chip, IN_FILTERED)) {
+            final int filteredPosition = positionOf(mFiltered, chip, mFilteredSorted);
+            if (filteredPosition > -1) {
+                mFiltered.remove(filteredPosition);
+                postChipsRemoved(FILTERED, filteredPosition, 1);
+            }
+        }
+
+        unmark(chip, IN_ORIGINAL | IN_FILTERED);
+        mSearchIndex.removeChip(chip);
+    }
+
+    private void addSelected(Chip chip) {
+        mSelected.add(chip);
+        postChipsInserted(SELECTED, mSelected.size() - 1, 1);
+        mark(chip, IN_SELECTED);
+    }
+
+    /**
+     * Finds the position of the given chip in the given list, using a binary search
+     * if the list is sorted. Falls back to a linear search if the chip isn't where
+     * it should be, which happens if its title changed after it was added.
+     */
+    private static int positionOf(List<Chip> chips, Chip chip, boolean sorted) {
+        if (sorted) {
+            final Comparator<Chip> comparator = Chip.getComparator();
+            int low = 0;
+            int high = chips.size();
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (comparator.compare(chips.get(mid), chip) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            // Look through the chips that compare equal to it
+            for (int i = low; i < chips.size(); i++) {
+                final Chip found = chips.get(i);
+                if (found.equals(chip)) {
+                    return i;
+                }
+                if (comparator.compare(found, chip) != 0) {
+                    break;
+                }
+            }
+        }
+        return chips.indexOf(chip);
+    }
+
+    private static boolean isSorted(List<Chip> chips) {
+        final Comparator<Chip> comparator = Chip.getComparator();
+        for (int i = 1; i < chips.size(); i++) {
+            if (comparator.compare(chips.get(i - 1), chips.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isMarked(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        return membership != null && (membership & flags) != 0;
+    }
+
+    private void mark(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        final int old = (membership == null) ? 0 : membership;
+        mMembership.put(chip, old | flags);
+
+        // Store the chip by its ID, when it's added to a list that has them
+        final int added = flags & ~old;
+        if ((added & IN_ORIGINAL) != 0) {
+            mOriginalIds.put(chip);
+        }
+        if ((added & IN_SELECTED) != 0) {
+            mSelectedIds.put(chip);
+        }
+    }
+
+    private void unmark(Chip chip, int flags) {
+        final Integer membership = mMembership.get(chip);
+        if (membership != null) {
+            final int remaining = membership & ~flags;
+            if (remaining == 0) {
+                mMembership.remove(chip);
+            } else {
+                mMembership.put(chip, remaining);
+            }
+
+            final int removed = membership & flags;
+            if ((removed & IN_ORIGINAL) != 0) {
+                mOriginalIds.remove(chip);
+            }
+            if ((removed & IN_SELECTED) != 0) {
+                mSelectedIds.remove(chip);
+            }
+        }
+    }
+
+    /**
+     * Copies the original chips only once after they change, so filtering many
+     * times in a row doesn't copy them again.
+     */
+    @Override
+    public List<Chip> getOriginalChipsSnapshot() {
+        if (mOriginalSnapshot == null) {
+            mOriginalSnapshot = Collections.unmodifiableList(new ArrayList<>(mOriginal));
+        }
+        return mOriginalSnapshot;
+    }
+
+    @Override
+    public ChipSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    @Override
+    public void setSearchIndex(ChipSearchIndex searchIndex) {
+        if (searchIndex == null) {
+            throw new NullPointerException("Search index cannot be null!");
+        }
+        searchIndex.setChips(mOriginal);
+        mSearchIndex = searchIndex;
+        notifyDataSourceChanged();
+    }
+
+
+    /**
+     * Stores chips by their IDs, so that they can be found without looking through
+     * a whole list. Chips without an ID aren't stored, and the ID of a chip shouldn't
+     * change while it's in the data source.
+     *
+     * Since IDs aren't required to be unique, each ID maps to either a single chip,
+     * or to a list of the chips that have it, in the order they were added.
+     */
+    private final class ChipIdMap {
+        private final Map<Object, Object> mChips = new HashMap<>();
+
+        void put(Chip chip) {
+            final Object id = chip.getId();
+            if (id == null) { return; }
+
+            final Object found = mChips.get(id);
+            if (found == null) {
+                mChips.put(id, chip);
+            } else if (found instanceof Chip) {
+                final List<Chip> chips = new ArrayList<>(2);
+                chips.add((Chip)found);
+                chips.add(chip);
+                mChips.put(id, chips);
+            } else {
+                asList(found).add(chip);
+            }
+        }
+
+        void remove(Chip chip) {
+            final Object id = chip.getId();
+            if (id == null) { return; }
+
+            final Object found = mChips.get(id);
+            if (found == chip) {
+                mChips.remove(id);
+            } else if (found != null && !(found instanceof Chip)) {
+                final List<Chip> chips = asList(found);
+                chips.remove(chip);
+                if (chips.size() == 1) {
+                    mChips.put(id, chips.get(0));
+                }
+            }
+        }
+
+        void clear() {
+            mChips.clear();
+        }
+
+        /**
+         * Gets the first added chip with the given ID, which is in any of the lists
+         * of the given flags.
+         */
+        Chip get(Object id, int flags) {
+            if (id == null) { return null; }
+
+            final Object found = mChips.get(id);
+            if (found instanceof Chip) {
+                return isMarked((Chip)found, flags) ? (Chip)found : null;
+            } else if (found != null) {
+                for (Chip chip : asList(found)) {
+                    if (isMarked(chip, flags)) {
+                        return chip;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the first added chip with each of the given IDs, in the order of the
+         * IDs, skipping any IDs that no chip has.
+         */
+        List<Chip> getAll(Collection<?> ids, int flags) {
+            if (ids == null) {
+                throw new NullPointerException("IDs cannot be null!");
+            }
+
+            final List<Chip> chips = new ArrayList<>(ids.size());
+            for (Object id : ids) {
+                final Chip chip = get(id, flags);
+                if (chip != null) {
+                    chips.add(chip);
+                }
+            }
+            return chips;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Chip> asList(Object found) {
+            return (List<Chip>)found;
+        }
     }
-}
\ No newline at end of file
+}
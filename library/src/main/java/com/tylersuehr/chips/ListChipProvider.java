@@ -0,0 +1,52 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipProvider} that provides the chips of a list, which are
+ * already in memory; this is mostly useful for testing a {@link PagedChipDataSource}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ListChipProvider implements ChipProvider {
+    private final List<Chip> mChips;
+    /* Position of the first chip with each ID */
+    private final Map<Object, Integer> mPositions = new HashMap<>();
+
+
+    /* Construct with the given chips, in the order given */
+    public ListChipProvider(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        mChips = Collections.unmodifiableList(new ArrayList<Chip>(chips));
+        for (int i = 0; i < mChips.size(); i++) {
+            final Object id = mChips.get(i).getId();
+            if (id != null && !mPositions.containsKey(id)) {
+                mPositions.put(id, i);
+            }
+        }
+    }
+
+    @Override
+    public int getChipCount() {
+        return mChips.size();
+    }
+
+    @Override
+    public List<? extends Chip> loadChips(int position, int count) {
+        return mChips.subList(position, position + count);
+    }
+
+    @Override
+    public int findChipById(Object id) {
+        final Integer position = (id != null) ? mPositions.get(id) : null;
+        return (position != null) ? position : -1;
+    }
+}
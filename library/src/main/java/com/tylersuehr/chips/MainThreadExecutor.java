@@ -0,0 +1,24 @@
+package com.tylersuehr.chips;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.concurrent.Executor;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link Executor} that posts commands to the main thread.
+ *
+ * Classes that post work to the main thread take one of these, so that another
+ * executor can be used instead where there's no main thread, like in unit tests.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class MainThreadExecutor implements Executor {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void execute(Runnable command) {
+        mHandler.post(command);
+    }
+}
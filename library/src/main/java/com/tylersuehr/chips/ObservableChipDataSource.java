@@ -1,29 +1,83 @@
 package com.tylersuehr.chips;
 import android.support.annotation.VisibleForTesting;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
  *
  * Implementation of {@link ChipDataSource} to provide the basic functionality for
- * observers ONLY. It manages the observers in a {@link java.util.LinkedList}, and
- * includes convenience methods for notifying them too.
+ * observers ONLY. It manages the observers in copy-on-write arrays, and includes
+ * convenience methods for notifying them too.
+ *
+ * Adding or removing an observer copies the array, so notifying observers needs no
+ * lock, and observers may add or remove observers (including themselves) while being
+ * notified; those changes take effect with the next notification.
  *
  * Note: when notifying observers, it's a good idea to notify change observers first
  * because that will update the internal components before any other observers.
  *
+ * Subclasses can describe a change using {@link #postChipsInserted(int, int, int)},
+ * {@link #postChipsRemoved(int, int, int)}, and {@link #postChipMoved(int, int, int)}
+ * before calling {@link #notifyDataSourceChanged()}; then each
+ * {@link ChipDataSource.ListChangeObserver} is told about those events, and then that
+ * they're finished, while any other {@link ChipDataSource.ChangeObserver} is only told
+ * that something changed.
+ * Events that continue each other (like chips added to the end of a list one after
+ * another) are coalesced into a single event.
+ *
+ * Between {@link #beginBatch()} and {@link #endBatch()}, notifications are held back;
+ * the batch ends with one change notification for all of its events, followed by
+ * the selection notifications in the order they happened. If any change during the
+ * batch posted no events (like replacing a whole list), the events are dropped, and
+ * every observer is only told that something changed; since they'd describe positions
+ * in lists that were replaced since.
+ *
+ * This also has the operations the library uses when a data source supports them,
+ * which aren't part of {@link ChipDataSource} so that custom implementations of it
+ * keep working. Each has a simple version here, using the methods of the interface,
+ * that subclasses can replace with a faster one.
+ *
  * @author Tyler Suehr
  * @version 1.0
  */
 public abstract class ObservableChipDataSource implements ChipDataSource {
+    private static final SelectionObserver[] NO_SELECTION_OBSERVERS = new SelectionObserver[0];
+    private static final ChangeObserver[] NO_CHANGE_OBSERVERS = new ChangeObserver[0];
+
     /* Aggregation of observers to watch changes to chip selection */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
-    List<SelectionObserver> mSelectionObservers;
+    volatile SelectionObserver[] mSelectionObservers = NO_SELECTION_OBSERVERS;
 
     /* Aggregation of observers to watch changes to data source */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
-    List<ChangeObserver> mChangeObservers;
+    volatile ChangeObserver[] mChangeObservers = NO_CHANGE_OBSERVERS;
+
+    /* Guards copying the observer arrays; never held while notifying */
+    private final Object mObserverLock = new Object();
+
+    /* Events posted since the last notification, stored as (type, list, first, second) */
+    private int[] mPendingEvents = new int[16];
+    private int mPendingCount;
+    /* True if events were posted since the last notification */
+    private boolean mEventsPosted;
+
+    /* Types of posted events */
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int MOVED = 2;
+
+    /* Depth of nested batches, and if anything changed during them */
+    private int mBatchDepth;
+    private boolean mBatchChanged;
+    /* True if a change during the batch posted no events, so they can't describe it */
+    private boolean mBatchChangedAll;
+    /* Chips selected or unselected during a batch, in order; set bits mean selected */
+    private final List<Chip> mBatchedChips = new ArrayList<>();
+    private final BitSet mBatchedSelections = new BitSet();
 
 
     @Override
@@ -31,10 +85,13 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mSelectionObservers == null) {
-            mSelectionObservers = new LinkedList<>();
+        synchronized (mObserverLock) {
+            final SelectionObserver[] observers = mSelectionObservers;
+            final SelectionObserver[] copy = new SelectionObserver[observers.length + 1];
+            System.arraycopy(observers, 0, copy, 0, observers.length);
+            copy[observers.length] = observer;
+            mSelectionObservers = copy;
         }
-        mSelectionObservers.add(observer);
     }
 
     @Override
@@ -42,16 +99,22 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mSelectionObservers != null) {
-            mSelectionObservers.remove(observer);
+        synchronized (mObserverLock) {
+            final SelectionObserver[] observers = mSelectionObservers;
+            final int index = indexOf(observers, observer);
+            if (index > -1) {
+                final SelectionObserver[] copy = new SelectionObserver[observers.length - 1];
+                System.arraycopy(observers, 0, copy, 0, index);
+                System.arraycopy(observers, index + 1, copy, index, copy.length - index);
+                mSelectionObservers = copy;
+            }
         }
     }
 
     @Override
     public final void removeAllSelectionObservers() {
-        if (mSelectionObservers != null) {
-            mSelectionObservers.clear();
-            mSelectionObservers = null;
+        synchronized (mObserverLock) {
+            mSelectionObservers = NO_SELECTION_OBSERVERS;
         }
     }
 
@@ -60,10 +123,13 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mChangeObservers == null) {
-            mChangeObservers = new LinkedList<>();
+        synchronized (mObserverLock) {
+            final ChangeObserver[] observers = mChangeObservers;
+            final ChangeObserver[] copy = new ChangeObserver[observers.length + 1];
+            System.arraycopy(observers, 0, copy, 0, observers.length);
+            copy[observers.length] = observer;
+            mChangeObservers = copy;
         }
-        mChangeObservers.add(observer);
     }
 
     @Override
@@ -71,43 +137,281 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mChangeObservers != null) {
-            mChangeObservers.remove(observer);
+        synchronized (mObserverLock) {
+            final ChangeObserver[] observers = mChangeObservers;
+            final int index = indexOf(observers, observer);
+            if (index > -1) {
+                final ChangeObserver[] copy = new ChangeObserver[observers.length - 1];
+                System.arraycopy(observers, 0, copy, 0, index);
+                System.arraycopy(observers, index + 1, copy, index, copy.length - index);
+                mChangeObservers = copy;
+            }
         }
     }
 
     @Override
     public final void removeAllChangedObservers() {
-        if (mChangeObservers != null) {
-            mChangeObservers.clear();
-            mChangeObservers = null;
+        synchronized (mObserverLock) {
+            mChangeObservers = NO_CHANGE_OBSERVERS;
         }
     }
 
     @Override
     public final void cloneObservers(ChipDataSource to) {
-        if (mSelectionObservers != null) {
-            for (SelectionObserver ob : mSelectionObservers) {
-                to.addSelectionObserver(ob);
+        final SelectionObserver[] selectionObservers = mSelectionObservers;
+        for (SelectionObserver ob : selectionObservers) {
+            to.addSelectionObserver(ob);
+        }
+        final ChangeObserver[] changeObservers = mChangeObservers;
+        for (ChangeObserver ob : changeObservers) {
+            to.addChangedObserver(ob);
+        }
+    }
+
+    /**
+     * Replaces the filtered chips with the results of filtering, without notifying
+     * change observers. By default, this changes the list of filtered chips.
+     *
+     * @param chips List of {@link Chip}
+     */
+    public void updateFilteredChips(List<? extends Chip> chips) {
+        ChipDataSources.replaceAll(getFilteredChips(), chips);
+    }
+
+    /**
+     * Gets the original chips as they are now, in a list that never changes, so that
+     * it can be read on any thread while this keeps changing; like filtering does on
+     * its worker thread. This should be called on the thread that changes this.
+     *
+     * By default, this copies the original chips every time.
+     *
+     * @return Immutable list of {@link Chip}
+     */
+    public List<Chip> getOriginalChipsSnapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(getOriginalChips()));
+    }
+
+    /**
+     * Adds many chips to the filterable chips, notifying change observers once.
+     * By default, this adds each of them in one batch.
+     *
+     * @param chips Collection of {@link Chip}
+     */
+    public void addFilteredChips(Collection<? extends Chip> chips) {
+        beginBatch();
+        try {
+            for (Chip chip : chips) {
+                addFilteredChip(chip);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Adds many chips to the selected chips, notifying change observers once.
+     * By default, this adds each of them in one batch.
+     *
+     * @param chips Collection of {@link Chip}
+     */
+    public void addSelectedChips(Collection<? extends Chip> chips) {
+        beginBatch();
+        try {
+            for (Chip chip : chips) {
+                addSelectedChip(chip);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Gets the selected chip with the given ID; by default, this scans them.
+     *
+     * @param id ID of the chip
+     * @return {@link Chip}, or null if no selected chip has the ID
+     */
+    public Chip getSelectedChipById(Object id) {
+        return ChipDataSources.findById(getSelectedChips(), id);
+    }
+
+    /**
+     * Gets the filtered chip with the given ID; by default, this scans them.
+     *
+     * @param id ID of the chip
+     * @return {@link Chip}, or null if no filtered chip has the ID
+     */
+    public Chip getFilteredChipById(Object id) {
+        return ChipDataSources.findById(getFilteredChips(), id);
+    }
+
+    /**
+     * Gets the selected chips with the given IDs, in the order of the IDs, skipping
+     * any IDs that no selected chip has; by default, this scans them.
+     *
+     * @param ids IDs of the chips
+     * @return List of {@link Chip}
+     */
+    public List<Chip> getSelectedChipsByIds(Collection<?> ids) {
+        return ChipDataSources.findAllByIds(getSelectedChips(), ids);
+    }
+
+    /**
+     * Gets the filtered chips with the given IDs, in the order of the IDs, skipping
+     * any IDs that no filtered chip has; by default, this scans them.
+     *
+     * @param ids IDs of the chips
+     * @return List of {@link Chip}
+     */
+    public List<Chip> getFilteredChipsByIds(Collection<?> ids) {
+        return ChipDataSources.findAllByIds(getFilteredChips(), ids);
+    }
+
+    /**
+     * Gets the search index used to filter the original chips quickly; if there's
+     * none, filtering scans the original chips. By default, there's none.
+     *
+     * @return {@link ChipSearchIndex}, or null
+     */
+    public ChipSearchIndex getSearchIndex() {
+        return null;
+    }
+
+    /**
+     * Changes the search index used to filter the original chips, which is given
+     * all the original chips to index them; and notifies change observers.
+     *
+     * By default, search indexes aren't supported, because the index must be kept
+     * up-to-date with every change to the original chips.
+     *
+     * @param searchIndex {@link ChipSearchIndex}
+     */
+    public void setSearchIndex(ChipSearchIndex searchIndex) {
+        throw new UnsupportedOperationException("Data source doesn't support search indexes!");
+    }
+
+    /**
+     * Begins a batch of changes, which holds back notifying observers until
+     * the matching call to {@link #endBatch()}. Batches may be nested.
+     *
+     * Use a try/finally block to ensure the batch is ended.
+     */
+    public final void beginBatch() {
+        mBatchDepth++;
+    }
+
+    /**
+     * Ends a batch of changes; if it's the outermost batch, observers are
+     * notified once about all the changes made during it.
+     */
+    public final void endBatch() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("No batch has begun!");
+        }
+        if (--mBatchDepth > 0) { return; }
+
+        if (mBatchChanged) {
+            if (mBatchChangedAll) {
+                mPendingEvents = new int[mPendingEvents.length];
+                mPendingCount = 0;
             }
+            mBatchChanged = false;
+            mBatchChangedAll = false;
+            notifyDataSourceChanged();
         }
-        if (mChangeObservers != null) {
-            for (ChangeObserver ob : mChangeObservers) {
-                to.addChangedObserver(ob);
+
+        // Copy the batched chips, in case an observer begins another batch
+        final List<Chip> chips = new ArrayList<>(mBatchedChips);
+        final BitSet selections = (BitSet)mBatchedSelections.clone();
+        mBatchedChips.clear();
+        mBatchedSelections.clear();
+        for (int i = 0; i < chips.size(); i++) {
+            if (selections.get(i)) {
+                notifyChipSelected(chips.get(i));
+            } else {
+                notifyChipUnselected(chips.get(i));
             }
         }
     }
 
+    /**
+     * Posts an event for chips inserted into one of the lists, which is dispatched
+     * by the next call to {@link #notifyDataSourceChanged()}.
+     *
+     * @param list {@link #SELECTED}, {@link #FILTERED}, or {@link #ORIGINAL}
+     * @param position Position of the first inserted chip
+     * @param count Count of inserted chips
+     */
+    protected final void postChipsInserted(int list, int position, int count) {
+        if (count > 0) {
+            postEvent(INSERTED, list, position, count);
+        }
+    }
+
+    /**
+     * Posts an event for chips removed from one of the lists, which is dispatched
+     * by the next call to {@link #notifyDataSourceChanged()}.
+     *
+     * @param list {@link #SELECTED}, {@link #FILTERED}, or {@link #ORIGINAL}
+     * @param position Position of the first removed chip
+     * @param count Count of removed chips
+     */
+    protected final void postChipsRemoved(int list, int position, int count) {
+        if (count > 0) {
+            postEvent(REMOVED, list, position, count);
+        }
+    }
+
+    /**
+     * Posts an event for a chip moved within one of the lists, which is dispatched
+     * by the next call to {@link #notifyDataSourceChanged()}.
+     *
+     * @param list {@link #SELECTED}, {@link #FILTERED}, or {@link #ORIGINAL}
+     * @param fromPosition Old position of the chip
+     * @param toPosition New position of the chip
+     */
+    protected final void postChipMoved(int list, int fromPosition, int toPosition) {
+        if (fromPosition != toPosition) {
+            postEvent(MOVED, list, fromPosition, toPosition);
+        }
+    }
+
     /**
      * Notifies {@link #mChangeObservers} that a change to the data
      * source happened.
+     *
+     * Any events posted since the last notification are dispatched to the
+     * observers that want them; if none were posted, those observers are
+     * told that the whole data source changed.
      */
     protected final void notifyDataSourceChanged() {
-        if (mChangeObservers != null) {
-            synchronized (this) {
-                for (ChangeObserver ob : mChangeObservers) {
-                    ob.onChipDataSourceChanged();
-                }
+        // Hold back the posted events until the batch ends
+        if (mBatchDepth > 0) {
+            mBatchChanged = true;
+            if (!mEventsPosted) {
+                mBatchChangedAll = true;
+            }
+            mEventsPosted = false;
+            return;
+        }
+        mEventsPosted = false;
+
+        // Detach the posted events, in case an observer changes this data source
+        final int[] events = mPendingEvents;
+        final int count = mPendingCount;
+        if (count > 0) {
+            mPendingEvents = new int[events.length];
+            mPendingCount = 0;
+        }
+
+        final ChangeObserver[] observers = mChangeObservers;
+        for (int i = 0; i < observers.length; i++) {
+            final ChangeObserver ob = observers[i];
+            if (ob instanceof ListChangeObserver && count > 0) {
+                dispatchEvents((ListChangeObserver)ob, events, count);
+                ((ListChangeObserver)ob).onChipChangesFinished();
+            } else {
+                ob.onChipDataSourceChanged();
             }
         }
     }
@@ -118,12 +422,14 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
      * @param chip {@link Chip} selected
      */
     protected final void notifyChipSelected(Chip chip) {
-        if (mSelectionObservers != null) {
-            synchronized (this) {
-                for (SelectionObserver ob : mSelectionObservers) {
-                    ob.onChipSelected(chip);
-                }
-            }
+        if (mBatchDepth > 0) {
+            mBatchedSelections.set(mBatchedChips.size());
+            mBatchedChips.add(chip);
+            return;
+        }
+        final SelectionObserver[] observers = mSelectionObservers;
+        for (int i = 0; i < observers.length; i++) {
+            observers[i].onChipSelected(chip);
         }
     }
 
@@ -133,11 +439,90 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
      * @param chip {@link Chip} unselected
      */
     protected final void notifyChipUnselected(Chip chip) {
-        if (mSelectionObservers != null) {
-            synchronized (this) {
-                for (SelectionObserver ob : mSelectionObservers) {
-                    ob.onChipDeselected(chip);
-                }
+        if (mBatchDepth > 0) {
+            mBatchedChips.add(chip);
+            return;
+        }
+        final SelectionObserver[] observers = mSelectionObservers;
+        for (int i = 0; i < observers.length; i++) {
+            observers[i].onChipDeselected(chip);
+        }
+    }
+
+    private static int indexOf(Object[] observers, Object observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i].equals(observer)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void postEvent(int type, int list, int first, int second) {
+        mEventsPosted = true;
+        if (mPendingCount > 0 && coalesceEvent(type, list, first, second)) {
+            return;
+        }
+        if (mPendingCount + 4 > mPendingEvents.length) {
+            final int[] grown = new int[mPendingEvents.length << 1];
+            System.arraycopy(mPendingEvents, 0, grown, 0, mPendingCount);
+            mPendingEvents = grown;
+        }
+        mPendingEvents[mPendingCount++] = type;
+        mPendingEvents[mPendingCount++] = list;
+        mPendingEvents[mPendingCount++] = first;
+        mPendingEvents[mPendingCount++] = second;
+    }
+
+    /**
+     * Merges the given event into the last event posted for the same list, if it
+     * continues it. Changes usually touch all three lists in turn, so the events
+     * of the other lists in between are skipped over.
+     * @return True if the event was merged
+     */
+    private boolean coalesceEvent(int type, int list, int position, int count) {
+        int last = mPendingCount - 4;
+        while (last > 0 && mPendingEvents[last + 1] != list
+                && last >= mPendingCount - 12) {
+            last -= 4;
+        }
+        if (mPendingEvents[last] != type || mPendingEvents[last + 1] != list) {
+            return false;
+        }
+
+        final int lastPosition = mPendingEvents[last + 2];
+        final int lastCount = mPendingEvents[last + 3];
+        if (type == INSERTED && position == lastPosition + lastCount) {
+            // Inserted right after the last inserted chips
+            mPendingEvents[last + 3] = lastCount + count;
+            return true;
+        }
+        if (type == REMOVED && position == lastPosition) {
+            // Removed the chips that followed the last removed chips
+            mPendingEvents[last + 3] = lastCount + count;
+            return true;
+        }
+        if (type == REMOVED && position + count == lastPosition) {
+            // Removed the chips that preceded the last removed chips
+            mPendingEvents[last + 2] = position;
+            mPendingEvents[last + 3] = lastCount + count;
+            return true;
+        }
+        return false;
+    }
+
+    private static void dispatchEvents(ListChangeObserver ob, int[] events, int count) {
+        for (int i = 0; i < count; i += 4) {
+            switch (events[i]) {
+                case INSERTED:
+                    ob.onChipsInserted(events[i + 1], events[i + 2], events[i + 3]);
+                    break;
+                case REMOVED:
+                    ob.onChipsRemoved(events[i + 1], events[i + 2], events[i + 3]);
+                    break;
+                case MOVED:
+                    ob.onChipMoved(events[i + 1], events[i + 2], events[i + 3]);
+                    break;
             }
         }
     }
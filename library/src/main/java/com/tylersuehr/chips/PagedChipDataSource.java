@@ -0,0 +1,873 @@
+package com.tylersuehr.chips;
+import android.util.LruCache;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link ObservableChipDataSource} that loads filterable chips on demand from
+ * a {@link ChipProvider}, one page at a time, instead of keeping all of them in memory.
+ *
+ * Only the most recently used pages are kept, so memory stays the same no matter how many
+ * chips the provider has; and since the filterable RecyclerView only asks for the chips
+ * it displays, only those pages are loaded.
+ *
+ * The original chips are a view over the provider, which skips the positions of the chips
+ * that were taken (selected). Until filtering publishes its results, the filtered chips
+ * are that same view; the results of filtering only hold the matching chips.
+ *
+ * Filterable chips added to this are kept in memory, sorted, and listed after the chips
+ * of the provider; they're kept when the provider changes.
+ *
+ * Notes: chips from the provider are identified by their position, or by their ID when
+ * they're no longer loaded; and by default this doesn't have a {@link ChipSearchIndex},
+ * so filtering looks through the pages of the provider. Setting one loads every chip of
+ * the provider into it, see {@link #setSearchIndex(ChipSearchIndex)}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class PagedChipDataSource extends ObservableChipDataSource {
+    /* Defaults for the count of chips in a page, and of pages kept in memory */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_PAGES = 8;
+    /* Position stored for a selected chip that was added to this, not loaded from the provider */
+    private static final int ADDED = -2;
+
+    private final int mPageSize;
+    private final int mMaxPages;
+
+    /* Pages loaded from the current provider, replaced when the provider changes */
+    private volatile PageCache mPages;
+    /* Provider positions of the taken chips, sorted; replaced when changed */
+    private volatile int[] mTaken = new int[0];
+    /* Filterable chips added to this, sorted, which come after the provider chips; replaced when changed */
+    private volatile List<Chip> mAdded = Collections.emptyList();
+    /* Ensures the provider only loads one page at a time */
+    private final Object mLoadLock = new Object();
+    /* Index of the original chips, if one was set */
+    private volatile ChipSearchIndex mSearchIndex;
+
+    /* View of the provider chips that haven't been taken, and of the added chips */
+    private final List<Chip> mOriginal = new OriginalChips();
+    /* Either the original chips, or the results of filtering */
+    private List<Chip> mFiltered = mOriginal;
+    /* Aggregation of all selected chips, selected by the user */
+    private final List<Chip> mSelected = new ArrayList<>();
+    /* Provider position of each selected chip, or -1 if it's not from the provider */
+    private final Map<Chip, Integer> mSelectedPositions = new HashMap<>();
+    /* Selected chips that have an ID, by their IDs, in the order they were selected */
+    private final Map<Object, List<Chip>> mSelectedIds = new HashMap<>();
+
+
+    /* Construct with the given provider, using the default page sizes */
+    public PagedChipDataSource(ChipProvider provider) {
+        this(provider, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    public PagedChipDataSource(ChipProvider provider, int pageSize, int maxPages) {
+        if (provider == null) {
+            throw new NullPointerException("Chip provider cannot be null!");
+        }
+        if (pageSize < 1 || maxPages < 1) {
+            throw new IllegalArgumentException("Page size and max pages must be positive!");
+        }
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+        mPages = new PageCache(provider);
+    }
+
+    /**
+     * Changes the provider of the filterable chips, which should be done whenever
+     * the chips of the provider change.
+     *
+     * The selected chips and the added chips are kept; any selected chips found in the
+     * new provider, using their IDs, are taken from it again. If there's a search index,
+     * every chip of the new provider is loaded into it.
+     *
+     * @param provider {@link ChipProvider}
+     */
+    public void setChipProvider(ChipProvider provider) {
+        if (provider == null) {
+            throw new NullPointerException("Chip provider cannot be null!");
+        }
+
+        final PageCache pages = new PageCache(provider);
+        int[] taken = new int[0];
+        for (Chip chip : mSelected) {
+            final Integer oldPosition = mSelectedPositions.get(chip);
+            if (oldPosition == ADDED) { continue; }
+
+            int position = -1;
+            if (oldPosition >= 0 && chip.getId() != null) {
+                position = provider.findChipById(chip.getId());
+                if (position >= 0 && Arrays.binarySearch(taken, position) < 0) {
+                    taken = insertPosition(taken, position);
+                } else {
+                    position = -1;
+                }
+            }
+            mSelectedPositions.put(chip, position);
+        }
+
+        mPages = pages;
+        mTaken = taken;
+        mFiltered = mOriginal;
+        if (mSearchIndex != null) {
+            indexOriginalChips(mSearchIndex);
+        }
+        notifyDataSourceChanged();
+    }
+
+    public ChipProvider getChipProvider() {
+        return mPages.provider;
+    }
+
+    @Override
+    public List<Chip> getSelectedChips() {
+        return mSelected;
+    }
+
+    @Override
+    public List<Chip> getFilteredChips() {
+        return mFiltered;
+    }
+
+    @Override
+    public List<Chip> getOriginalChips() {
+        return mOriginal;
+    }
+
+    /**
+     * A view over the provider chips that haven't been taken now, which doesn't change
+     * when chips are taken or the provider changes; no pages are loaded to make it.
+     */
+    @Override
+    public List<Chip> getOriginalChipsSnapshot() {
+        return new ProviderChips(mPages, mTaken, mAdded);
+    }
+
+    @Override
+    public Chip getFilteredChip(int position) {
+        return mFiltered.get(position);
+    }
+
+    @Override
+    public Chip getSelectedChip(int position) {
+        return mSelected.get(position);
+    }
+
+    /**
+     * Sets the filterable chips using a {@link ListChipProvider}, which keeps all of them
+     * in memory; like {@link ListChipDataSource}, this clears the selected chips, and
+     * this clears the added chips.
+     */
+    @Override
+    public void setFilterableChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        final List<Chip> sorted = new ArrayList<>(chips);
+        Collections.sort(sorted, Chip.getComparator());
+
+        mSelected.clear();
+        mSelectedPositions.clear();
+        mSelectedIds.clear();
+        mAdded = Collections.emptyList();
+        setChipProvider(new ListChipProvider(sorted));
+    }
+
+    @Override
+    public void updateFilteredChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        // Filtering publishes its own results, so don't notify observers here; if
+        // it published all the original chips, keep using the view over them
+        if (chips == mOriginal || (chips instanceof ProviderChips
+                && ((ProviderChips)chips).isCurrent())) {
+            mFiltered = mOriginal;
+        } else {
+            mFiltered = new ArrayList<>(chips);
+        }
+    }
+
+    @Override
+    public void takeChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!chip.isFilterable()) {
+            throw new IllegalArgumentException("Cannot take a non-filterable chip!");
+        }
+
+        final int addedPosition = mAdded.indexOf(chip);
+        if (addedPosition > -1) {
+            takeAdded(chip, addedPosition, -1);
+        } else {
+            final int position = findPosition(chip);
+            if (position < 0) {
+                throw new IllegalArgumentException("Chip is not in filtered chip list!");
+            }
+            take(chip, position, -1);
+        }
+
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    @Override
+    public void takeChip(int position) {
+        final Chip foundChip = mFiltered.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; " +
+                    "not found in filtered chip list!");
+        }
+
+        // Check if chip is filterable
+        if (foundChip.isFilterable()) {
+            final int providerCount = mPages.count - mTaken.length;
+            final int addedPosition = (mFiltered == mOriginal)
+                    ? position - providerCount
+                    : mAdded.indexOf(foundChip);
+            if (addedPosition > -1) {
+                takeAdded(foundChip, addedPosition, position);
+            } else {
+                final int providerPosition = (mFiltered == mOriginal)
+                        ? toProviderPosition(position, mTaken)
+                        : findPosition(foundChip);
+                if (providerPosition < 0) {
+                    throw new IllegalArgumentException("Chip is not in original chip list!");
+                }
+                take(foundChip, providerPosition, position);
+            }
+        } else {
+            // Just add it to the selected list only
+            select(foundChip, -1);
+        }
+
+        notifyDataSourceChanged();
+        notifyChipSelected(foundChip);
+    }
+
+    @Override
+    public void replaceChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+
+        // Check if chip is actually selected
+        final int position = mSelectedPositions.containsKey(chip) ? mSelected.indexOf(chip) : -1;
+        if (position > -1) {
+            unselect(position);
+
+            notifyDataSourceChanged();
+            notifyChipUnselected(chip);
+        } else {
+            throw new IllegalArgumentException("Chip is not in selected chip list!");
+        }
+    }
+
+    @Override
+    public void replaceChip(int position) {
+        final Chip foundChip = mSelected.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; not " +
+                    "found in selected chip list!");
+        }
+        unselect(position);
+
+        notifyDataSourceChanged();
+        notifyChipUnselected(foundChip);
+    }
+
+    /**
+     * Adds the chip in memory, after the chips of the provider.
+     */
+    @Override
+    public void addFilteredChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        chip.setFilterable(true);
+        insertAdded(chip);
+
+        notifyDataSourceChanged();
+    }
+
+    /**
+     * Adds the chips in memory, after the chips of the provider; they're sorted, then
+     * merged with the chips already added in one pass.
+     */
+    @Override
+    public void addFilteredChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        final List<Chip> batch = new ArrayList<>(chips);
+        for (Chip chip : batch) {
+            if (chip == null) {
+                throw new NullPointerException("Chip cannot be null!");
+            }
+            chip.setFilterable(true);
+        }
+        Collections.sort(batch, Chip.getComparator());
+
+        final Comparator<Chip> comparator = Chip.getComparator();
+        final List<Chip> before = mAdded;
+        final List<Chip> added = new ArrayList<>(before.size() + batch.size());
+        final int providerCount = mPages.count - mTaken.length;
+        int i = 0;
+        int j = 0;
+        while (j < batch.size()) {
+            // Copy the chips that come before the next chip in the batch
+            while (i < before.size() && comparator.compare(before.get(i), batch.get(j)) <= 0) {
+                added.add(before.get(i++));
+            }
+
+            // Copy the run of the batch that comes before the next chip
+            final int runStart = added.size();
+            do {
+                added.add(batch.get(j++));
+            } while (j < batch.size() && (i == before.size()
+                    || comparator.compare(before.get(i), batch.get(j)) > 0));
+            postChipsInserted(ORIGINAL, providerCount + runStart, added.size() - runStart);
+            if (mFiltered == mOriginal) {
+                postChipsInserted(FILTERED, providerCount + runStart, added.size() - runStart);
+            }
+        }
+        while (i < before.size()) {
+            added.add(before.get(i++));
+        }
+        mAdded = Collections.unmodifiableList(added);
+
+        // Filtering results get the chips at the end, until filtered again
+        if (mFiltered != mOriginal) {
+            mFiltered.addAll(batch);
+            postChipsInserted(FILTERED, mFiltered.size() - batch.size(), batch.size());
+        }
+        if (mSearchIndex != null) {
+            for (Chip chip : batch) {
+                mSearchIndex.addChip(chip);
+            }
+        }
+
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        select(chip, -1);
+
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    @Override
+    public void addSelectedChips(Collection<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        if (chips.isEmpty()) { return; }
+
+        for (Chip chip : chips) {
+            if (chip == null) {
+                throw new NullPointerException("Chip cannot be null!");
+            }
+            select(chip, -1);
+        }
+
+        notifyDataSourceChanged();
+        for (Chip chip : chips) {
+            notifyChipSelected(chip);
+        }
+    }
+
+    @Override
+    public void clearFilteredChips() {
+        postChipsRemoved(ORIGINAL, 0, mOriginal.size());
+        postChipsRemoved(FILTERED, 0, mFiltered.size());
+
+        // The selected chips are no longer from the provider, or added
+        for (Chip chip : mSelected) {
+            mSelectedPositions.put(chip, -1);
+        }
+        mPages = new PageCache(new ListChipProvider(Collections.<Chip>emptyList()));
+        mTaken = new int[0];
+        mAdded = Collections.emptyList();
+        mFiltered = mOriginal;
+        if (mSearchIndex != null) {
+            mSearchIndex.clear();
+        }
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void clearSelectedChips() {
+        // Since we want to tell observers that chips have been unselected,
+        // we need to store a clone of the selected list of chips
+        final List<Chip> clone = new ArrayList<>(mSelected);
+        final List<Chip> added = new ArrayList<>(mAdded);
+        for (Chip chip : clone) {
+            final Integer position = mSelectedPositions.get(chip);
+            if (chip.isFilterable() && position != null && position != -1) {
+                if (position == ADDED) {
+                    added.add(chip);
+                }
+                if (mSearchIndex != null) {
+                    mSearchIndex.addChip(chip);
+                }
+            }
+        }
+        mSelected.clear();
+        mSelectedPositions.clear();
+        mSelectedIds.clear();
+
+        // The taken chips are back in the original chips, wherever they are
+        mTaken = new int[0];
+        if (added.size() > mAdded.size()) {
+            Collections.sort(added, Chip.getComparator());
+            mAdded = Collections.unmodifiableList(added);
+        }
+        notifyDataSourceChanged();
+
+        // Now let's tell our selection observers!
+        for (Chip chip : clone) {
+            notifyChipUnselected(chip);
+        }
+    }
+
+    @Override
+    public boolean existsInFiltered(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (mFiltered != mOriginal) {
+            return mFiltered.contains(chip);
+        }
+        return mAdded.contains(chip) || findPosition(chip) > -1;
+    }
+
+    @Override
+    public boolean existsInSelected(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mSelectedPositions.containsKey(chip);
+    }
+
+    @Override
+    public boolean existsInDataSource(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mSelectedPositions.containsKey(chip) || mAdded.contains(chip)
+                || findPosition(chip) > -1;
+    }
+
+    @Override
+    public Chip getSelectedChipById(Object id) {
+        if (id == null) { return null; }
+        final List<Chip> chips = mSelectedIds.get(id);
+        return (chips != null) ? chips.get(0) : null;
+    }
+
+    @Override
+    public Chip getFilteredChipById(Object id) {
+        if (id == null) { return null; }
+        if (mFiltered != mOriginal) {
+            for (Chip chip : mFiltered) {
+                if (id.equals(chip.getId())) {
+                    return chip;
+                }
+            }
+            return null;
+        }
+
+        // Let the provider find it, without loading every page
+        final PageCache pages = mPages;
+        final int position = pages.provider.findChipById(id);
+        if (position >= 0 && Arrays.binarySearch(mTaken, position) < 0) {
+            return pages.getChip(position);
+        }
+        for (Chip chip : mAdded) {
+            if (id.equals(chip.getId())) {
+                return chip;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Chip> getSelectedChipsByIds(Collection<?> ids) {
+        if (ids == null) {
+            throw new NullPointerException("IDs cannot be null!");
+        }
+
+        final List<Chip> chips = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            final Chip chip = getSelectedChipById(id);
+            if (chip != null) {
+                chips.add(chip);
+            }
+        }
+        return chips;
+    }
+
+    @Override
+    public List<Chip> getFilteredChipsByIds(Collection<?> ids) {
+        if (ids == null) {
+            throw new NullPointerException("IDs cannot be null!");
+        }
+
+        final List<Chip> chips = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            final Chip chip = getFilteredChipById(id);
+            if (chip != null) {
+                chips.add(chip);
+            }
+        }
+        return chips;
+    }
+
+    /**
+     * Null unless one was set, since indexing the chips needs all of them loaded.
+     */
+    @Override
+    public ChipSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    /**
+     * Sets an index of the original chips, which loads every chip of the provider into it
+     * now, and again whenever the provider changes. The index keeps all of them in memory,
+     * so this is only worth it when the provider doesn't have too many chips to filter
+     * them by looking through its pages.
+     */
+    @Override
+    public void setSearchIndex(ChipSearchIndex searchIndex) {
+        if (searchIndex == null) {
+            throw new NullPointerException("Search index cannot be null!");
+        }
+        indexOriginalChips(searchIndex);
+        mSearchIndex = searchIndex;
+        notifyDataSourceChanged();
+    }
+
+    /**
+     * Loads every original chip into the given index, skipping any that the provider
+     * no longer has.
+     */
+    private void indexOriginalChips(ChipSearchIndex searchIndex) {
+        final List<Chip> original = getOriginalChipsSnapshot();
+        final List<Chip> chips = new ArrayList<>(original.size());
+        for (Chip chip : original) {
+            if (chip != null) {
+                chips.add(chip);
+            }
+        }
+        searchIndex.setChips(chips);
+    }
+
+    /**
+     * Takes the chip at the given provider position into the selected chips.
+     *
+     * @param filteredPosition Position of the chip in the filtered chips, or -1
+     */
+    private void take(Chip chip, int position, int filteredPosition) {
+        final int[] taken = mTaken;
+        final int originalPosition = position - countBefore(taken, position);
+        mTaken = insertPosition(taken, position);
+        postChipsRemoved(ORIGINAL, originalPosition, 1);
+        removeFiltered(chip, originalPosition, filteredPosition);
+        select(chip, position);
+    }
+
+    /**
+     * Takes the chip at the given position of the added chips into the selected chips.
+     *
+     * @param filteredPosition Position of the chip in the filtered chips, or -1
+     */
+    private void takeAdded(Chip chip, int addedPosition, int filteredPosition) {
+        final List<Chip> added = new ArrayList<>(mAdded);
+        added.remove(addedPosition);
+        final int originalPosition = mPages.count - mTaken.length + addedPosition;
+        mAdded = Collections.unmodifiableList(added);
+        postChipsRemoved(ORIGINAL, originalPosition, 1);
+        removeFiltered(chip, originalPosition, filteredPosition);
+        select(chip, ADDED);
+    }
+
+    /**
+     * Removes a taken chip from the filtered chips and the search index.
+     */
+    private void removeFiltered(Chip chip, int originalPosition, int filteredPosition) {
+        if (mFiltered == mOriginal) {
+            postChipsRemoved(FILTERED, originalPosition, 1);
+        } else {
+            if (filteredPosition < 0) {
+                filteredPosition = mFiltered.indexOf(chip);
+            }
+            if (filteredPosition > -1) {
+                mFiltered.remove(filteredPosition);
+                postChipsRemoved(FILTERED, filteredPosition, 1);
+            }
+        }
+        if (mSearchIndex != null) {
+            mSearchIndex.removeChip(chip);
+        }
+    }
+
+    /**
+     * Inserts the given chip into the added chips, where it's sorted.
+     */
+    private void insertAdded(Chip chip) {
+        final List<Chip> added = new ArrayList<>(mAdded);
+        final int addedPosition = ListChipDataSource.insertionPoint(added, chip);
+        added.add(addedPosition, chip);
+        mAdded = Collections.unmodifiableList(added);
+
+        final int originalPosition = mPages.count - mTaken.length + addedPosition;
+        postChipsInserted(ORIGINAL, originalPosition, 1);
+        if (mFiltered == mOriginal) {
+            postChipsInserted(FILTERED, originalPosition, 1);
+        } else {
+            mFiltered.add(chip);
+            postChipsInserted(FILTERED, mFiltered.size() - 1, 1);
+        }
+        if (mSearchIndex != null) {
+            mSearchIndex.addChip(chip);
+        }
+    }
+
+    private void select(Chip chip, int position) {
+        mSelected.add(chip);
+        mSelectedPositions.put(chip, position);
+        final Object id = chip.getId();
+        if (id != null) {
+            List<Chip> chips = mSelectedIds.get(id);
+            if (chips == null) {
+                chips = new ArrayList<>(1);
+                mSelectedIds.put(id, chips);
+            }
+            chips.add(chip);
+        }
+        postChipsInserted(SELECTED, mSelected.size() - 1, 1);
+    }
+
+    /**
+     * Removes the selected chip at the given position; if it was taken from the
+     * provider, or from the added chips, it's back in the original chips.
+     */
+    private void unselect(int selectedPosition) {
+        final Chip chip = mSelected.remove(selectedPosition);
+        final Integer position = mSelectedPositions.remove(chip);
+        final List<Chip> chips = (chip.getId() != null) ? mSelectedIds.get(chip.getId()) : null;
+        if (chips != null) {
+            chips.remove(chip);
+            if (chips.isEmpty()) {
+                mSelectedIds.remove(chip.getId());
+            }
+        }
+        postChipsRemoved(SELECTED, selectedPosition, 1);
+
+        if (position == null || !chip.isFilterable()) { return; }
+        if (position == ADDED) {
+            insertAdded(chip);
+        } else if (position >= 0) {
+            final int[] taken = removePosition(mTaken, position);
+            final int originalPosition = position - countBefore(taken, position);
+            mTaken = taken;
+            postChipsInserted(ORIGINAL, originalPosition, 1);
+            if (mFiltered == mOriginal) {
+                postChipsInserted(FILTERED, originalPosition, 1);
+            }
+            if (mSearchIndex != null) {
+                mSearchIndex.addChip(chip);
+            }
+        }
+    }
+
+    /**
+     * Finds the provider position of the given chip, if it hasn't been taken. Looks
+     * through the loaded pages first, then asks the provider using the chip's ID.
+     *
+     * @return Provider position of the chip, or -1 if not found
+     */
+    private int findPosition(Chip chip) {
+        final PageCache pages = mPages;
+        int position = -1;
+        for (Map.Entry<Integer, List<Chip>> page : pages.snapshot().entrySet()) {
+            final int index = page.getValue().indexOf(chip);
+            if (index > -1) {
+                position = page.getKey() * mPageSize + index;
+                break;
+            }
+        }
+        if (position < 0 && chip.getId() != null) {
+            position = pages.provider.findChipById(chip.getId());
+        }
+        return (position < 0 || Arrays.binarySearch(mTaken, position) >= 0) ? -1 : position;
+    }
+
+    /**
+     * Gets the original chip at the given position, from the given pages, taken
+     * positions, and added chips.
+     */
+    private static Chip getOriginalChip(PageCache pages, int[] taken, List<Chip> added,
+                                        int position) {
+        final int providerCount = pages.count - taken.length;
+        if (position < 0 || position >= providerCount + added.size()) {
+            throw new IndexOutOfBoundsException("Position: " + position
+                    + ", size: " + (providerCount + added.size()));
+        }
+        return (position < providerCount)
+                ? pages.getChip(toProviderPosition(position, taken))
+                : added.get(position - providerCount);
+    }
+
+    /**
+     * Converts a position in the original chips to a provider position, by skipping
+     * over the taken positions.
+     */
+    private static int toProviderPosition(int position, int[] taken) {
+        int providerPosition = position;
+        for (int takenPosition : taken) {
+            if (takenPosition > providerPosition) { break; }
+            providerPosition++;
+        }
+        return providerPosition;
+    }
+
+    /* Counts the taken positions before the given position */
+    private static int countBefore(int[] taken, int position) {
+        final int index = Arrays.binarySearch(taken, position);
+        return (index >= 0) ? index : -(index + 1);
+    }
+
+    private static int[] insertPosition(int[] taken, int position) {
+        final int index = countBefore(taken, position);
+        final int[] copy = new int[taken.length + 1];
+        System.arraycopy(taken, 0, copy, 0, index);
+        copy[index] = position;
+        System.arraycopy(taken, index, copy, index + 1, taken.length - index);
+        return copy;
+    }
+
+    private static int[] removePosition(int[] taken, int position) {
+        final int index = Arrays.binarySearch(taken, position);
+        if (index < 0) {
+            return taken;
+        }
+        final int[] copy = new int[taken.length - 1];
+        System.arraycopy(taken, 0, copy, 0, index);
+        System.arraycopy(taken, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+
+    /**
+     * Least recently used pages of chips loaded from a provider.
+     */
+    private final class PageCache extends LruCache<Integer, List<Chip>> {
+        final ChipProvider provider;
+        final int count;
+
+        PageCache(ChipProvider provider) {
+            super(mMaxPages);
+            this.provider = provider;
+            this.count = provider.getChipCount();
+        }
+
+        /**
+         * Gets the chip at the given provider position, or null if the provider loaded
+         * fewer chips than it counted, like when its Cursor was closed.
+         */
+        Chip getChip(int position) {
+            final List<Chip> page = get(position / mPageSize);
+            final int index = position % mPageSize;
+            return (index < page.size()) ? page.get(index) : null;
+        }
+
+        @Override
+        protected List<Chip> create(Integer page) {
+            final int start = page * mPageSize;
+            final List<Chip> chips = new ArrayList<>(mPageSize);
+            synchronized (mLoadLock) {
+                chips.addAll(provider.loadChips(start, Math.min(mPageSize, count - start)));
+            }
+            for (Chip chip : chips) {
+                chip.setFilterable(true);
+            }
+            return chips;
+        }
+    }
+
+
+    /**
+     * View of the provider chips, skipping the taken positions, followed by the added
+     * chips; this reads the current pages, taken positions, and added chips on every call.
+     */
+    private final class OriginalChips extends AbstractList<Chip> implements RandomAccess {
+        @Override
+        public Chip get(int position) {
+            return getOriginalChip(mPages, mTaken, mAdded, position);
+        }
+
+        @Override
+        public int size() {
+            return mPages.count - mTaken.length + mAdded.size();
+        }
+    }
+
+
+    /**
+     * View of the provider chips, skipping the taken positions, followed by the added
+     * chips, as they were when this was made; so that it can be used on the worker
+     * thread of filtering.
+     */
+    private final class ProviderChips extends AbstractList<Chip> implements RandomAccess {
+        private final PageCache mViewPages;
+        private final int[] mViewTaken;
+        private final List<Chip> mViewAdded;
+
+        ProviderChips(PageCache pages, int[] taken, List<Chip> added) {
+            mViewPages = pages;
+            mViewTaken = taken;
+            mViewAdded = added;
+        }
+
+        /**
+         * Checks if this is a view of the current original chips.
+         */
+        boolean isCurrent() {
+            return mViewPages == mPages && mViewTaken == mTaken && mViewAdded == mAdded;
+        }
+
+        @Override
+        public Chip get(int position) {
+            return getOriginalChip(mViewPages, mViewTaken, mViewAdded, position);
+        }
+
+        @Override
+        public int size() {
+            return mViewPages.count - mViewTaken.length + mViewAdded.size();
+        }
+    }
+}
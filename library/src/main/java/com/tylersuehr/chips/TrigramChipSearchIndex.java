@@ -0,0 +1,322 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipSearchIndex} that keeps posting lists of every gram,
+ * up to three characters long, found in the normalized title and subtitle of each chip.
+ *
+ * A chip matches when its lower-cased title, or its lower-cased and whitespace-stripped
+ * subtitle, contains the lower-cased constraint. Accents can optionally be folded too,
+ * so that "jose" matches "José". The normalized keys are cached by each chip, see
+ * {@link ChipSearchKeys}.
+ *
+ * Constraints of up to three characters are answered directly by their posting list.
+ * Longer constraints look up the posting list of their rarest trigram and only verify
+ * those candidates, so that the cost of a query is proportional to the number of
+ * candidates, not the number of indexed chips. Other matchers can find their candidates
+ * by counting the grams they share with the query, using the same posting lists.
+ *
+ * Chips are stored by an ordinal assigned when they're indexed. Removed chips leave a
+ * hole behind, which is revived if the same chip is indexed again, or is dropped when
+ * the index gets compacted.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class TrigramChipSearchIndex implements ChipSearchIndex {
+    /* Longest gram stored in the posting lists */
+    private static final int GRAM = 3;
+
+    /* Indexed chips, stored by ordinal; null for removed chips */
+    private final List<Chip> mChips = new ArrayList<>();
+    /* Normalized keys of the chips when they were indexed, stored by ordinal */
+    private final List<ChipSearchKeys> mKeys = new ArrayList<>();
+    /* Ordinal of every chip that was indexed */
+    private final Map<Chip, Integer> mOrdinals = new HashMap<>();
+    /* Ordinals of the chips containing each gram */
+    private final Map<String, Postings> mPostings = new HashMap<>();
+
+    /* Count of holes left by removed chips */
+    private int mRemovedCount;
+    /* True if ordinals follow the order of Chip.getComparator() */
+    private boolean mOrdered = true;
+    /* Chip with the highest ordinal */
+    private Chip mLastChip;
+    /* True if accents are folded when matching */
+    private final boolean mFoldAccents;
+
+
+    /* Construct without folding accents */
+    public TrigramChipSearchIndex() {
+        this(false);
+    }
+
+    public TrigramChipSearchIndex(boolean foldAccents) {
+        mFoldAccents = foldAccents;
+    }
+
+    /**
+     * Checks if accents are folded when matching.
+     */
+    boolean isFoldingAccents() {
+        return mFoldAccents;
+    }
+
+    @Override
+    public synchronized void setChips(List<? extends Chip> chips) {
+        clear();
+        for (Chip chip : chips) {
+            append(chip);
+        }
+        mOrdered = true;
+    }
+
+    @Override
+    public synchronized void addChip(Chip chip) {
+        final Integer ordinal = mOrdinals.get(chip);
+        if (ordinal != null) {
+            if (mChips.get(ordinal) != null) {
+                return; // Already indexed
+            }
+
+            // Revive the hole if the chip hasn't changed since it was removed
+            if (chip.getSearchKeys() == mKeys.get(ordinal)) {
+                mChips.set(ordinal, chip);
+                mRemovedCount--;
+                return;
+            }
+        }
+
+        if (mLastChip != null && Chip.getComparator().compare(mLastChip, chip) > 0) {
+            mOrdered = false;
+        }
+        append(chip);
+    }
+
+    @Override
+    public synchronized void removeChip(Chip chip) {
+        final Integer ordinal = mOrdinals.get(chip);
+        if (ordinal != null && mChips.get(ordinal) != null) {
+            mChips.set(ordinal, null);
+            mRemovedCount++;
+
+            // Compact the index once it's mostly holes
+            if (mRemovedCount > GRAM && mRemovedCount > (mChips.size() >> 1)) {
+                compact();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        mChips.clear();
+        mKeys.clear();
+        mOrdinals.clear();
+        mPostings.clear();
+        mRemovedCount = 0;
+        mOrdered = true;
+        mLastChip = null;
+    }
+
+    @Override
+    public synchronized List<Chip> search(CharSequence constraint) {
+        final String query = ChipSearchKeys.normalizeQuery(constraint, mFoldAccents);
+        final List<Chip> results = new ArrayList<>();
+
+        if (query.length() == 0) {
+            for (Chip chip : mChips) {
+                if (chip != null) {
+                    results.add(chip);
+                }
+            }
+        } else if (query.length() <= GRAM) {
+            // The posting list of the query itself is the exact answer
+            final Postings postings = mPostings.get(query);
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    final Chip chip = mChips.get(postings.ordinals[i]);
+                    if (chip != null) {
+                        results.add(chip);
+                    }
+                }
+            }
+        } else {
+            // Every trigram of the query must be indexed; verify the rarest one's chips
+            Postings rarest = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                final Postings postings = mPostings.get(query.substring(i, i + GRAM));
+                if (postings == null) {
+                    return results;
+                }
+                if (rarest == null || postings.size < rarest.size) {
+                    rarest = postings;
+                }
+            }
+            for (int i = 0; i < rarest.size; i++) {
+                final int ordinal = rarest.ordinals[i];
+                final Chip chip = mChips.get(ordinal);
+                if (chip != null && mKeys.get(ordinal).matches(query, mFoldAccents)) {
+                    results.add(chip);
+                }
+            }
+        }
+
+        if (!mOrdered) {
+            Collections.sort(results, Chip.getComparator());
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<Chip> refine(List<Chip> chips, CharSequence constraint) {
+        final String query = ChipSearchKeys.normalizeQuery(constraint, mFoldAccents);
+        final List<Chip> results = new ArrayList<>();
+        for (Chip chip : chips) {
+            if (matchesQuery(chip, query)) {
+                results.add(chip);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Counts the grams shared by each chip, by going through the posting list of each
+     * gram of the query; so this costs as much as the total length of those lists.
+     */
+    @Override
+    public synchronized List<Chip> searchGrams(String query, boolean folded,
+                                               int gramLength, int minShared) {
+        if (folded != mFoldAccents || gramLength < 1 || gramLength > GRAM) {
+            return null;
+        }
+        if (minShared < 1) {
+            throw new IllegalArgumentException("Min shared grams must be positive!");
+        }
+
+        final int grams = query.length() - gramLength + 1;
+        final List<Chip> results = new ArrayList<>();
+        if (grams < minShared) {
+            return results;
+        }
+
+        // Ordinals are collected as they reach the count, so they're sorted afterwards
+        final int[] counts = new int[mChips.size()];
+        int[] found = new int[16];
+        int foundCount = 0;
+        for (int i = 0; i < grams; i++) {
+            final Postings postings = mPostings.get(query.substring(i, i + gramLength));
+            if (postings == null) { continue; }
+            for (int j = 0; j < postings.size; j++) {
+                final int ordinal = postings.ordinals[j];
+                if (++counts[ordinal] == minShared) {
+                    if (foundCount == found.length) {
+                        found = Arrays.copyOf(found, foundCount << 1);
+                    }
+                    found[foundCount++] = ordinal;
+                }
+            }
+        }
+
+        Arrays.sort(found, 0, foundCount);
+        for (int i = 0; i < foundCount; i++) {
+            final Chip chip = mChips.get(found[i]);
+            if (chip != null) {
+                results.add(chip);
+            }
+        }
+        if (!mOrdered) {
+            Collections.sort(results, Chip.getComparator());
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized boolean matches(Chip chip, CharSequence constraint) {
+        return matchesQuery(chip, ChipSearchKeys.normalizeQuery(constraint, mFoldAccents));
+    }
+
+    private boolean matchesQuery(Chip chip, String query) {
+        final Integer ordinal = mOrdinals.get(chip);
+        if (ordinal != null && mChips.get(ordinal) != null) {
+            return mKeys.get(ordinal).matches(query, mFoldAccents);
+        }
+        return chip.getSearchKeys().matches(query, mFoldAccents);
+    }
+
+    private void append(Chip chip) {
+        final int ordinal = mChips.size();
+        final ChipSearchKeys keys = chip.getSearchKeys();
+
+        mChips.add(chip);
+        mKeys.add(keys);
+        mOrdinals.put(chip, ordinal);
+        mLastChip = chip;
+
+        if (mFoldAccents) {
+            indexKey(keys.foldedTitleKey, ordinal);
+            indexKey(keys.foldedSubtitleKey, ordinal);
+        } else {
+            indexKey(keys.titleKey, ordinal);
+            indexKey(keys.subtitleKey, ordinal);
+        }
+    }
+
+    private void indexKey(String key, int ordinal) {
+        final int length = key.length();
+        for (int start = 0; start < length; start++) {
+            for (int end = start + 1; end <= length && end - start <= GRAM; end++) {
+                final String gram = key.substring(start, end);
+                Postings postings = mPostings.get(gram);
+                if (postings == null) {
+                    postings = new Postings();
+                    mPostings.put(gram, postings);
+                }
+                postings.add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index using only the chips that haven't been removed,
+     * which keeps them in the same relative order.
+     */
+    private void compact() {
+        final List<Chip> live = new ArrayList<>(mChips.size() - mRemovedCount);
+        for (Chip chip : mChips) {
+            if (chip != null) {
+                live.add(chip);
+            }
+        }
+
+        final boolean ordered = mOrdered;
+        setChips(live);
+        mOrdered = ordered;
+    }
+
+
+    /**
+     * Growable list of ordinals, in the order they were indexed.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            // Grams are indexed one chip at a time, so duplicates are always adjacent
+            if (size > 0 && ordinals[size - 1] == ordinal) { return; }
+            if (size == ordinals.length) {
+                final int[] grown = new int[size << 1];
+                System.arraycopy(ordinals, 0, grown, 0, size);
+                ordinals = grown;
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+}
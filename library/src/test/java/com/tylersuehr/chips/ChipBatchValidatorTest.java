@@ -0,0 +1,307 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipBatchValidator}, which run its tasks and post its
+ * results directly on the test thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipBatchValidatorTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void validate_splitsValidAndInvalid() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+
+        batchValidator.validate(chips("a", "bad 1", "b", "bad 2", "c"), false, callback);
+
+        assertEquals(1, callback.finished);
+        assertTitles(callback.valid, "a", "b", "c");
+        assertTitles(callback.invalid, "bad 1", "bad 2");
+        assertEquals(5, validator.total());
+    }
+
+    @Test
+    public void validate_stopOnInvalid() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+
+        // Tasks run one after another, so nothing after the first invalid chip is validated
+        batchValidator.validate(chips("a", "b", "bad 1", "c", "bad 2"), true, callback);
+
+        assertEquals(1, callback.finished);
+        assertTitles(callback.valid, "a", "b");
+        assertTitles(callback.invalid, "bad 1");
+        assertEquals(3, validator.total());
+    }
+
+    @Test
+    public void validate_stopOnInvalidWithoutInvalid() {
+        final ChipBatchValidator batchValidator
+                = new ChipBatchValidator(new CountingValidator("bad"), DIRECT, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+
+        batchValidator.validate(chips("a", "b", "c"), true, callback);
+
+        assertTitles(callback.valid, "a", "b", "c");
+        assertTitles(callback.invalid);
+    }
+
+    @Test
+    public void validate_emptyBatch() {
+        final ChipBatchValidator batchValidator
+                = new ChipBatchValidator(new CountingValidator("bad"), DIRECT, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+
+        batchValidator.validate(Collections.<Chip>emptyList(), true, callback);
+
+        assertEquals(1, callback.finished);
+        assertTitles(callback.valid);
+        assertTitles(callback.invalid);
+    }
+
+    @Test
+    public void validate_reportsProgress() {
+        final ChipBatchValidator batchValidator
+                = new ChipBatchValidator(new CountingValidator("bad"), DIRECT, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            chips.add(new TestChip(i, "Chip " + i, null));
+        }
+
+        batchValidator.validate(chips, false, callback);
+
+        // Every tenth chip, except the last one which finishes the batch
+        assertEquals(99, callback.progress.size());
+        assertEquals(Integer.valueOf(10), callback.progress.get(0));
+        assertEquals(Integer.valueOf(990), callback.progress.get(98));
+        assertEquals(1000, callback.valid.size());
+    }
+
+    @Test
+    public void cancel_dropsResults() {
+        final List<Runnable> tasks = new ArrayList<>();
+        final Executor queue = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, queue, DIRECT);
+        final RecordingCallback callback = new RecordingCallback();
+
+        final ChipBatchValidator.Batch batch
+                = batchValidator.validate(chips("a", "b"), false, callback);
+        assertFalse(batch.isCancelled());
+        batch.cancel();
+        assertTrue(batch.isCancelled());
+        for (Runnable task : new ArrayList<>(tasks)) {
+            task.run();
+        }
+
+        assertEquals(0, callback.finished);
+        assertEquals(0, validator.total());
+    }
+
+    @Test
+    public void validate_cachesByIdUntilChanged() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final TestChip chip = new TestChip(1, "Anna", "anna@example.com");
+
+        assertTrue(batchValidator.validate(chip));
+        assertTrue(batchValidator.validate(chip));
+        assertEquals(1, validator.count("Anna"));
+
+        // Another chip with the same ID and text uses the same result
+        assertTrue(batchValidator.validate(new TestChip(1, "Anna", "anna@example.com")));
+        assertEquals(1, validator.count("Anna"));
+
+        chip.setTitle("bad Anna");
+        assertFalse(batchValidator.validate(chip));
+        assertFalse(batchValidator.validate(chip));
+        assertEquals(1, validator.count("bad Anna"));
+
+        chip.setSubtitle("anna@example.org");
+        assertFalse(batchValidator.validate(chip));
+        assertEquals(2, validator.count("bad Anna"));
+
+        chip.setSubtitle(null);
+        assertFalse(batchValidator.validate(chip));
+        assertFalse(batchValidator.validate(chip));
+        assertEquals(3, validator.count("bad Anna"));
+
+        chip.setTitle("Anna");
+        assertTrue(batchValidator.validate(chip));
+        assertEquals(2, validator.count("Anna"));
+    }
+
+    @Test
+    public void validate_withoutIdNeverCached() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final Chip chip = new TestChip(null, "Anna", null);
+
+        batchValidator.validate(chip);
+        batchValidator.validate(chip);
+        assertEquals(2, validator.count("Anna"));
+    }
+
+    @Test
+    public void clearCache_validatesAgain() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final List<Chip> chips = chips("a", "b");
+
+        batchValidator.validate(chips, false, new RecordingCallback());
+        batchValidator.validate(chips, false, new RecordingCallback());
+        assertEquals(2, validator.total());
+
+        batchValidator.clearCache();
+        batchValidator.validate(chips, false, new RecordingCallback());
+        assertEquals(4, validator.total());
+    }
+
+    @Test
+    public void validate_withoutCache() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final List<Chip> chips = chips("a", "bad b");
+        final RecordingCallback callback = new RecordingCallback();
+
+        // Neither uses the cached results, nor stores its own
+        batchValidator.validate(chips, false, new RecordingCallback());
+        batchValidator.validate(chips, false, false, callback);
+        assertEquals(4, validator.total());
+        assertTitles(callback.valid, "a");
+        assertTitles(callback.invalid, "bad b");
+
+        batchValidator.clearCache();
+        batchValidator.validate(chips, false, false, new RecordingCallback());
+        batchValidator.validate(chips, false, new RecordingCallback());
+        assertEquals(8, validator.total());
+    }
+
+    @Test
+    public void validate_dropsLeastRecentlyUsed() {
+        final CountingValidator validator = new CountingValidator("bad");
+        final ChipBatchValidator batchValidator = new ChipBatchValidator(validator, DIRECT, DIRECT);
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            chips.add(new TestChip(i, "Chip " + i, null));
+        }
+
+        // Using the first chip again makes the second one the least recently used
+        for (int i = 0; i < 1000; i++) {
+            batchValidator.validate(chips.get(i));
+        }
+        batchValidator.validate(chips.get(0));
+        batchValidator.validate(chips.get(1000));
+
+        batchValidator.validate(chips.get(0));
+        batchValidator.validate(chips.get(2));
+        assertEquals(1001, validator.total());
+        batchValidator.validate(chips.get(1));
+        assertEquals(1002, validator.total());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructor_nullMainExecutor() {
+        new ChipBatchValidator(new CountingValidator("bad"), DIRECT, null);
+    }
+
+    private static void assertTitles(List<Chip> chips, String... titles) {
+        final List<String> actual = new ArrayList<>(chips.size());
+        for (Chip chip : chips) {
+            actual.add(chip.getTitle());
+        }
+        assertEquals(Arrays.asList(titles), actual);
+    }
+
+    private static List<Chip> chips(String... titles) {
+        final List<Chip> chips = new ArrayList<>(titles.length);
+        for (String title : titles) {
+            chips.add(new TestChip(title));
+        }
+        return chips;
+    }
+
+
+    /**
+     * Treats chips whose titles start with the given prefix as invalid, and counts
+     * how many times each title was validated.
+     */
+    private static final class CountingValidator implements ChipsInputLayout.ChipValidator {
+        private final Map<String, Integer> mCounts = new HashMap<>();
+        private final String mInvalidPrefix;
+
+        CountingValidator(String invalidPrefix) {
+            mInvalidPrefix = invalidPrefix;
+        }
+
+        @Override
+        public synchronized boolean validate(Chip chip) {
+            mCounts.put(chip.getTitle(), count(chip.getTitle()) + 1);
+            return !chip.getTitle().startsWith(mInvalidPrefix);
+        }
+
+        synchronized int count(String title) {
+            final Integer count = mCounts.get(title);
+            return (count != null) ? count : 0;
+        }
+
+        synchronized int total() {
+            int total = 0;
+            for (int count : mCounts.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+
+    /**
+     * Records everything a batch reports.
+     */
+    private static final class RecordingCallback implements ChipBatchValidator.Callback {
+        final List<Integer> progress = new ArrayList<>();
+        List<Chip> valid;
+        List<Chip> invalid;
+        int finished;
+
+        @Override
+        public void onValidationProgress(int validated, int count) {
+            progress.add(validated);
+        }
+
+        @Override
+        public void onValidationFinished(List<Chip> valid, List<Chip> invalid) {
+            this.valid = valid;
+            this.invalid = invalid;
+            finished++;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.tylersuehr.chips;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipFinder}, mostly for looking for more hits of the
+ * same constraint (load more), and for which earlier hits get refined.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipFinderTest {
+    private static final ChipFinder.Cancellation NEVER = new ChipFinder.Cancellation() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private ChipFinder mFinder;
+    private CountingMatcher mMatcher;
+    private List<Chip> mChips;
+
+
+    @Before
+    public void setUp() {
+        mFinder = new ChipFinder();
+        mMatcher = new CountingMatcher();
+        mFinder.setMatcher(mMatcher, false);
+        mChips = chips("Abe", "Bob", "Cab", "Dan", "Eda", "Fay", "Gab", "Hal", "Ida", "Jo");
+    }
+
+    @Test
+    public void findChips_stopsAtLimit() {
+        final ChipFinder.Refinement hits = mFinder.findChips("a", mChips, 0, 3, NEVER);
+
+        assertTitles(hits.hits, "Abe", "Cab", "Dan");
+        assertFalse(hits.isComplete());
+        assertEquals(4, mMatcher.matched); // Stopped right after the third hit
+    }
+
+    @Test
+    public void findChips_loadMoreResumes() {
+        mFinder.findChips("a", mChips, 0, 3, NEVER);
+        mMatcher.matched = 0;
+
+        final ChipFinder.Refinement more = mFinder.findChips("a", mChips, 0, 6, NEVER);
+        assertTitles(more.hits, "Abe", "Cab", "Dan", "Eda", "Fay", "Gab");
+        assertFalse(more.isComplete());
+        assertEquals(3, mMatcher.matched); // Only Eda, Fay, and Gab
+
+        mMatcher.matched = 0;
+        final ChipFinder.Refinement all = mFinder.findChips("a", mChips, 0, 9, NEVER);
+        assertTitles(all.hits, "Abe", "Cab", "Dan", "Eda", "Fay", "Gab", "Hal", "Ida");
+        assertTrue(all.isComplete());
+        assertEquals(3, mMatcher.matched); // Hal, Ida, and Jo
+
+        // Earlier hits aren't changed by looking for more of them
+        assertNotSame(more.hits, all.hits);
+        assertEquals(6, more.hits.size());
+    }
+
+    @Test
+    public void findChips_reusesEnoughHits() {
+        final ChipFinder.Refinement hits = mFinder.findChips("a", mChips, 0, 3, NEVER);
+        mMatcher.matched = 0;
+
+        assertSame(hits, mFinder.findChips("a", mChips, 0, 3, NEVER));
+        assertSame(hits, mFinder.findChips("a", mChips, 0, 2, NEVER));
+        assertEquals(0, mMatcher.matched);
+
+        final ChipFinder.Refinement all = mFinder.findChips("a", mChips, 0, 0, NEVER);
+        assertTrue(all.isComplete());
+        assertSame(all, mFinder.findChips("a", mChips, 0, 3, NEVER));
+    }
+
+    @Test
+    public void findChips_refinesCompletePrefix() {
+        mFinder.findChips("a", mChips, 0, 0, NEVER);
+        mMatcher.matched = 0;
+
+        final ChipFinder.Refinement hits = mFinder.findChips("ab", mChips, 0, 0, NEVER);
+        assertTitles(hits.hits, "Abe", "Cab", "Gab");
+        assertEquals(8, mMatcher.matched); // Only the hits of "a"
+    }
+
+    @Test
+    public void findChips_searchesAgainAfterTruncatedPrefix() {
+        mFinder.findChips("a", mChips, 0, 2, NEVER);
+        mMatcher.matched = 0;
+
+        // Chips after where "a" stopped could match too
+        final ChipFinder.Refinement hits = mFinder.findChips("ab", mChips, 0, 0, NEVER);
+        assertTitles(hits.hits, "Abe", "Cab", "Gab");
+        assertEquals(10, mMatcher.matched);
+    }
+
+    @Test
+    public void findChips_loadMoreAfterRefining() {
+        mFinder.findChips("a", mChips, 0, 0, NEVER);
+        final ChipFinder.Refinement hits = mFinder.findChips("ab", mChips, 0, 1, NEVER);
+        assertTitles(hits.hits, "Abe");
+
+        mMatcher.matched = 0;
+        final ChipFinder.Refinement more = mFinder.findChips("ab", mChips, 0, 2, NEVER);
+        assertTitles(more.hits, "Abe", "Cab");
+        assertEquals(1, mMatcher.matched); // Resumed at Cab, in the hits of "a"
+    }
+
+    @Test
+    public void findChips_backspaceDropsLongerConstraints() {
+        mFinder.findChips("a", mChips, 0, 0, NEVER);
+        mFinder.findChips("ab", mChips, 0, 0, NEVER);
+        mMatcher.matched = 0;
+
+        final ChipFinder.Refinement hits = mFinder.findChips("a", mChips, 0, 0, NEVER);
+        assertEquals(8, hits.hits.size());
+        assertEquals(0, mMatcher.matched);
+
+        mFinder.findChips("b", mChips, 0, 0, NEVER);
+        assertEquals(10, mMatcher.matched);
+    }
+
+    @Test
+    public void findChips_newVersionDropsHits() {
+        mFinder.findChips("a", mChips, 0, 0, NEVER);
+        mMatcher.matched = 0;
+
+        final List<Chip> chips = new ArrayList<>(mChips);
+        chips.add(new TestChip("Kay"));
+        final ChipFinder.Refinement hits = mFinder.findChips("a", chips, 1, 0, NEVER);
+        assertEquals(9, hits.hits.size());
+        assertEquals(11, mMatcher.matched);
+    }
+
+    @Test
+    public void findChips_newMatcherDropsHits() {
+        mFinder.findChips("a", mChips, 0, 0, NEVER);
+
+        final CountingMatcher matcher = new CountingMatcher();
+        mFinder.setMatcher(matcher, false);
+        mFinder.findChips("ab", mChips, 0, 0, NEVER);
+        assertEquals(10, matcher.matched);
+    }
+
+    @Test
+    public void findChips_foldingChangeDropsHits() {
+        mFinder.setMatcher(null, false);
+        final List<Chip> chips = chips("José", "Josh", "Joe");
+        assertTitles(mFinder.findChips("jos", chips, 0, 0, NEVER).hits, "José", "Josh");
+        assertTitles(mFinder.findChips("jose", chips, 0, 0, NEVER).hits);
+
+        // The hits of "jos" were found without folding, so they can't be refined
+        mFinder.setMatcher(null, true);
+        assertTitles(mFinder.findChips("jose", chips, 0, 0, NEVER).hits, "José");
+    }
+
+    @Test
+    public void findChips_cancelled() {
+        final ChipFinder.Cancellation always = new ChipFinder.Cancellation() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        assertNull(mFinder.findChips("a", mChips, 0, 3, always));
+
+        // Nothing was kept for the cancelled constraint
+        mFinder.findChips("a", mChips, 0, 3, NEVER);
+        assertEquals(4, mMatcher.matched);
+
+        // Cancelling load more keeps the earlier hits
+        assertNull(mFinder.findChips("a", mChips, 0, 6, always));
+        assertEquals(3, mFinder.findChips("a", mChips, 0, 3, NEVER).hits.size());
+    }
+
+    @Test
+    public void findChips_skipsMissingChips() {
+        final List<Chip> chips = new ArrayList<>(mChips);
+        chips.set(0, null);
+        assertTitles(mFinder.findChips("ab", chips, 0, 0, NEVER).hits, "Cab", "Gab");
+    }
+
+    @Test
+    public void findChips_usesSearchIndexByDefault() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(mChips);
+        mFinder.setMatcher(null, false);
+        mFinder.setSearchIndex(index);
+
+        // All the hits are found, since the limit is applied when publishing
+        final ChipFinder.Refinement hits = mFinder.findChips("a", mChips, 0, 3, NEVER);
+        assertEquals(8, hits.hits.size());
+        assertTrue(hits.isComplete());
+        assertTitles(mFinder.findChips("ab", mChips, 0, 1, NEVER).hits, "Abe", "Cab", "Gab");
+    }
+
+    @Test
+    public void findChips_defaultMatcherWithoutIndex() {
+        mFinder.setMatcher(null, true);
+        final List<Chip> chips = chips("José", "Josh", "Joe");
+        assertTitles(mFinder.findChips("jose", chips, 0, 0, NEVER).hits, "José");
+    }
+
+    private static void assertTitles(List<Chip> chips, String... titles) {
+        final List<String> actual = new ArrayList<>(chips.size());
+        for (Chip chip : chips) {
+            actual.add(chip.getTitle());
+        }
+        assertEquals(Arrays.asList(titles), actual);
+    }
+
+    private static List<Chip> chips(String... titles) {
+        final List<Chip> chips = new ArrayList<>(titles.length);
+        for (String title : titles) {
+            chips.add(new TestChip(title));
+        }
+        Collections.sort(chips, Chip.getComparator());
+        return chips;
+    }
+
+
+    /**
+     * Matches chips whose lower-cased titles contain the constraint, counting
+     * every chip it's asked about.
+     */
+    private static final class CountingMatcher implements ChipMatcher {
+        int matched;
+
+        @Override
+        public Query compile(CharSequence constraint) {
+            final String pattern = constraint.toString().toLowerCase();
+            return new Query() {
+                @Override
+                public boolean matches(Chip chip) {
+                    matched++;
+                    return chip.getTitle().toLowerCase().contains(pattern);
+                }
+            };
+        }
+
+        @Override
+        public boolean canRefine(CharSequence prefix, CharSequence constraint) {
+            return true;
+        }
+    }
+}
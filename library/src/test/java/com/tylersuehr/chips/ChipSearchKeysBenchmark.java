@@ -0,0 +1,137 @@
+package com.tylersuehr.chips;
+import org.junit.Ignore;
+import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Measures the bytes allocated by a filter pass over 50,000 chips, comparing the keys
+ * cached by {@link Chip#getSearchKeys()} to normalizing the title and subtitle of every
+ * chip, which is how chips were filtered before.
+ *
+ * The bytes are counted for the test thread, using the allocation counter of
+ * {@link com.sun.management.ThreadMXBean}; on a JVM without one, nothing is measured.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipSearchKeysBenchmark {
+    private static final int CHIPS = 50000;
+    private static final String[] CONSTRAINTS = {"j", "jo", "jos", "smi", "555", "@example"};
+
+    @Test
+    public void filter_cachedKeysAllocateNothingPerChip() {
+        final List<Chip> chips = makeChips();
+        final ChipMatcher matcher = new ContainsChipMatcher(true);
+        final long[] allocated = measure(chips, matcher);
+        if (allocated == null) { return; }
+
+        // Compiling each query still allocates, but only once per keystroke
+        final long perChip = allocated[1] / ((long)CHIPS * CONSTRAINTS.length);
+        assertEquals(0, perChip);
+        assertTrue(allocated[1] < allocated[0]);
+    }
+
+    @Ignore("Prints allocations, run manually")
+    @Test
+    public void filter_reportAllocations() {
+        final List<Chip> chips = makeChips();
+        final long[] allocated = measure(chips, new ContainsChipMatcher(true));
+        if (allocated == null) {
+            System.out.println("Allocation counting isn't supported by this JVM");
+            return;
+        }
+
+        final long passes = CONSTRAINTS.length;
+        System.out.println(String.format(Locale.US,
+                "Filtering %d chips: normalizing %d bytes, cached keys %d bytes per keystroke",
+                CHIPS, allocated[0] / passes, allocated[1] / passes));
+    }
+
+    /**
+     * Counts the bytes allocated by filtering the chips with every constraint, first
+     * by normalizing each chip, then using the cached keys; or returns null if the
+     * JVM can't count them.
+     */
+    private static long[] measure(List<Chip> chips, ChipMatcher matcher) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        final long thread = Thread.currentThread().getId();
+
+        // Warm up, which also caches the keys of every chip
+        int sink = 0;
+        for (String constraint : CONSTRAINTS) {
+            sink += filterNormalizing(chips, constraint) + filterCached(chips, matcher, constraint);
+        }
+
+        long start = bean.getThreadAllocatedBytes(thread);
+        for (String constraint : CONSTRAINTS) {
+            sink += filterNormalizing(chips, constraint);
+        }
+        final long normalizing = bean.getThreadAllocatedBytes(thread) - start;
+
+        start = bean.getThreadAllocatedBytes(thread);
+        for (String constraint : CONSTRAINTS) {
+            sink += filterCached(chips, matcher, constraint);
+        }
+        final long cached = bean.getThreadAllocatedBytes(thread) - start;
+
+        assertTrue(sink > 0);
+        return new long[] {normalizing, cached};
+    }
+
+    /* How chips were filtered before: normalizing the title and subtitle every time */
+    private static int filterNormalizing(List<Chip> chips, String constraint) {
+        final String pattern = constraint.toLowerCase().trim();
+        int hits = 0;
+        for (int i = 0; i < chips.size(); i++) {
+            final Chip chip = chips.get(i);
+            if (chip.getTitle().toLowerCase().contains(pattern)
+                    || (chip.getSubtitle() != null && chip.getSubtitle().toLowerCase()
+                    .replaceAll("\\s", "").contains(pattern))) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int filterCached(List<Chip> chips, ChipMatcher matcher, String constraint) {
+        final ChipMatcher.Query query = matcher.compile(constraint);
+        int hits = 0;
+        for (int i = 0; i < chips.size(); i++) {
+            if (query.matches(chips.get(i))) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static List<Chip> makeChips() {
+        final String[] first = {"José", "Anna", "John", "Zoë", "Mike", "Renée"};
+        final String[] last = {"Smith", "García", "Müller", "Johnson", "Lee"};
+        final Random random = new Random(42);
+        final List<Chip> chips = new ArrayList<>(CHIPS);
+        for (int i = 0; i < CHIPS; i++) {
+            final String name = first[random.nextInt(first.length)] + " "
+                    + last[random.nextInt(last.length)];
+            final String subtitle = (i % 2 == 0)
+                    ? "+1 555 " + random.nextInt(1000) + " " + i
+                    : name.toLowerCase(Locale.US).replace(' ', '.') + i + "@example.com";
+            chips.add(new TestChip(i, name, subtitle));
+        }
+        return chips;
+    }
+}
@@ -0,0 +1,90 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipSearchKeys}, and for how they're cached by
+ * {@link Chip#getSearchKeys()} until the title or subtitle changes.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipSearchKeysTest {
+    @Test
+    public void keys_normalized() {
+        final ChipSearchKeys keys = new ChipSearchKeys("José García", "+1 555 123 4567");
+        assertEquals("josé garcía", keys.titleKey);
+        assertEquals("jose garcia", keys.foldedTitleKey);
+        assertEquals("+15551234567", keys.subtitleKey);
+        assertSame(keys.subtitleKey, keys.foldedSubtitleKey); // Nothing to fold
+
+        final ChipSearchKeys noSubtitle = new ChipSearchKeys("Anna", null);
+        assertEquals("", noSubtitle.subtitleKey);
+        assertEquals("", noSubtitle.foldedSubtitleKey);
+    }
+
+    @Test
+    public void matches_titleOrSubtitle() {
+        final ChipSearchKeys keys = new ChipSearchKeys("José García", "jose@example.com");
+        assertTrue(keys.matches("josé", false));
+        assertFalse(keys.matches("garcia", false));
+        assertTrue(keys.matches("garcia", true));
+        assertTrue(keys.matches("@example", false));
+        assertFalse(keys.matches("smith", true));
+    }
+
+    @Test
+    public void isFor_comparesContents() {
+        final ChipSearchKeys keys = new ChipSearchKeys("Anna", "anna@example.com");
+        assertTrue(keys.isFor("Anna", "anna@example.com"));
+        assertTrue(keys.isFor(new String("Anna"), new String("anna@example.com")));
+        assertFalse(keys.isFor("Anna", null));
+        assertFalse(keys.isFor("Ann", "anna@example.com"));
+
+        final ChipSearchKeys noSubtitle = new ChipSearchKeys("Anna", null);
+        assertTrue(noSubtitle.isFor("Anna", null));
+        assertFalse(noSubtitle.isFor("Anna", ""));
+    }
+
+    @Test
+    public void getSearchKeys_cachedUntilChanged() {
+        final TestChip chip = new TestChip(1, "Anna", "anna@example.com");
+        final ChipSearchKeys keys = chip.getSearchKeys();
+        assertSame(keys, chip.getSearchKeys());
+
+        // Equal strings, even if they're different instances, keep the keys
+        chip.setTitle(new String("Anna"));
+        chip.setSubtitle(new String("anna@example.com"));
+        assertSame(keys, chip.getSearchKeys());
+
+        chip.setTitle("Annabel");
+        final ChipSearchKeys retitled = chip.getSearchKeys();
+        assertNotSame(keys, retitled);
+        assertEquals("annabel", retitled.titleKey);
+        assertSame(retitled, chip.getSearchKeys());
+
+        chip.setSubtitle("Annabel@Example.com");
+        final ChipSearchKeys resubtitled = chip.getSearchKeys();
+        assertNotSame(retitled, resubtitled);
+        assertEquals("annabel@example.com", resubtitled.subtitleKey);
+
+        chip.setSubtitle(null);
+        final ChipSearchKeys cleared = chip.getSearchKeys();
+        assertNotSame(resubtitled, cleared);
+        assertEquals("", cleared.subtitleKey);
+        assertSame(cleared, chip.getSearchKeys());
+    }
+
+    @Test
+    public void getSearchKeys_matchersSeeChanges() {
+        final TestChip chip = new TestChip(1, "Anna", null);
+        final ChipMatcher.Query query = new ContainsChipMatcher().compile("bel");
+        assertFalse(query.matches(chip));
+
+        chip.setTitle("Annabel");
+        assertTrue(query.matches(chip));
+    }
+}
@@ -0,0 +1,148 @@
+package com.tylersuehr.chips;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipStreamLoader}, and for how the changes it makes
+ * are dispatched to a {@link ChipDataSource.ListChangeObserver}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipStreamLoaderTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ListChipDataSource mDataSource;
+    private RecordingObserver mObserver;
+
+
+    @Before
+    public void setUp() {
+        mDataSource = new ListChipDataSource();
+        mObserver = new RecordingObserver();
+        mDataSource.addChangedObserver(mObserver);
+    }
+
+    @Test
+    public void load_addsAllChipsSorted() {
+        final List<Chip> chips = makeChips(20000, 1);
+        final ChipStreamLoader loader = new ChipStreamLoader(mDataSource, DIRECT, DIRECT);
+        loader.load(chips.iterator());
+
+        final List<Chip> original = mDataSource.getOriginalChips();
+        assertEquals(chips.size(), original.size());
+        Collections.sort(chips, Chip.getComparator());
+        assertEquals(chips, original);
+    }
+
+    @Test
+    public void load_finishesChangesOncePerChunk() {
+        final int[] chunks = new int[1];
+        final ChipStreamLoader loader = new ChipStreamLoader(mDataSource, DIRECT, DIRECT);
+        loader.setOnChipsStreamedListener(new ChipStreamLoader.OnChipsStreamedListener() {
+            @Override
+            public void onChipsStreamed(int loadedCount, boolean finished) {
+                chunks[0]++;
+            }
+        });
+        loader.load(makeChips(20000, 2).iterator());
+
+        // Each chunk is merged in many runs, but that's only finished once
+        assertEquals(chunks[0], mObserver.finished);
+        assertTrue(mObserver.originalInserts > mObserver.finished);
+    }
+
+    @Test
+    public void offer_addsChipsWhileLoading() {
+        final ChipStreamLoader loader = new ChipStreamLoader(mDataSource, DIRECT, DIRECT);
+        loader.load(makeChips(500, 3).iterator());
+        loader.offer(makeChips(300, 4));
+        assertEquals(800, mDataSource.getOriginalChips().size());
+        assertEquals(4, mObserver.finished); // Chunks of 100, 200, and 200; and the offer
+    }
+
+    @Test
+    public void cancel_dropsPendingChunks() {
+        final List<Runnable> pending = new ArrayList<>();
+        final Executor queue = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pending.add(command);
+            }
+        };
+        final ChipStreamLoader loader = new ChipStreamLoader(mDataSource, DIRECT, queue);
+        loader.load(makeChips(500, 5).iterator());
+        loader.cancel();
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).run();
+        }
+        assertTrue(mDataSource.getOriginalChips().isEmpty());
+    }
+
+    @Test
+    public void batch_finishesChangesOnce() {
+        mDataSource.beginBatch();
+        try {
+            for (Chip chip : makeChips(10, 6)) {
+                mDataSource.addFilteredChip(chip);
+            }
+        } finally {
+            mDataSource.endBatch();
+        }
+        assertEquals(1, mObserver.finished);
+        assertTrue(mObserver.originalInserts > 1);
+    }
+
+    private static List<Chip> makeChips(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<Chip> chips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chips.add(new TestChip(seed + ":" + i, "chip " + random.nextInt(1000000), null));
+        }
+        return chips;
+    }
+
+
+    /**
+     * Counts the events of each kind that it's told about.
+     */
+    private static final class RecordingObserver implements ChipDataSource.ListChangeObserver {
+        int originalInserts;
+        int finished;
+
+        @Override
+        public void onChipsInserted(int list, int position, int count) {
+            if (list == ChipDataSource.ORIGINAL) {
+                originalInserts++;
+            }
+        }
+
+        @Override
+        public void onChipsRemoved(int list, int position, int count) {}
+
+        @Override
+        public void onChipMoved(int list, int fromPosition, int toPosition) {}
+
+        @Override
+        public void onChipChangesFinished() {
+            finished++;
+        }
+
+        @Override
+        public void onChipDataSourceChanged() {}
+    }
+}
@@ -0,0 +1,98 @@
+package com.tylersuehr.chips;
+import org.junit.Ignore;
+import org.junit.Test;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Compares {@link ChipTextNormalizer} to lower-casing and decomposing every key
+ * with {@link Normalizer}, which is how accents were folded before; both must fold
+ * the same way. Timing them is an ignored test, to run manually, since this is what
+ * justified folding with tables instead.
+ *
+ * Each run normalizes the same 50,000 names, a mix of plain, Latin accented,
+ * Vietnamese, and Greek names; the best of a few runs is printed.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipTextNormalizerBenchmark {
+    private static final int NAMES = 50000;
+    private static final int RUNS = 5;
+
+    @Ignore("Prints timings, run manually")
+    @Test
+    public void normalize_reportTimings() {
+        final List<String> names = makeNames();
+
+        long lowerCase = Long.MAX_VALUE;
+        long decomposing = Long.MAX_VALUE;
+        long normalizer = Long.MAX_VALUE;
+        int sink = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (String name : names) {
+                sink += name.toLowerCase(Locale.US).length();
+            }
+            lowerCase = Math.min(lowerCase, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (String name : names) {
+                sink += decompose(name.toLowerCase(Locale.US)).length();
+            }
+            decomposing = Math.min(decomposing, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (String name : names) {
+                sink += ChipTextNormalizer.normalize(name, true, false).length();
+            }
+            normalizer = Math.min(normalizer, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format(Locale.US,
+                "Folding %d names: toLowerCase %.1f ms, NFD %.1f ms, ChipTextNormalizer %.1f ms (%d)",
+                NAMES, lowerCase / 1e6, decomposing / 1e6, normalizer / 1e6, sink));
+    }
+
+    @Test
+    public void normalize_foldsLikeDecomposing() {
+        for (String name : makeNames().subList(0, 1000)) {
+            assertEquals(decompose(name.toLowerCase(Locale.US)),
+                    ChipTextNormalizer.normalize(name, true, false));
+        }
+    }
+
+    private static List<String> makeNames() {
+        final String[] first = {"José", "Zoë", "Nguyễn", "Ανδρέας", "Anna", "François",
+                "Trần", "Ólafur", "Mike", "Σοφία", "Renée", "Jürgen"};
+        final String[] last = {"García", "Lê", "Smith", "Παπαδόπουλος", "Müller",
+                "Phạm", "Brontë", "Johnson", "Ševčík", "O'Brien"};
+        final Random random = new Random(42);
+        final List<String> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            names.add(first[random.nextInt(first.length)] + " "
+                    + last[random.nextInt(last.length)] + " " + i);
+        }
+        return names;
+    }
+
+    /* How accents were folded before: decompose, then drop the combining marks */
+    private static String decompose(String text) {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
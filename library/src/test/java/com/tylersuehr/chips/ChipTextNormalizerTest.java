@@ -0,0 +1,79 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipTextNormalizer}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipTextNormalizerTest {
+    @Test
+    public void normalize_foldsCaseWithoutLocale() {
+        assertEquals("istanbul", ChipTextNormalizer.normalize("ISTANBUL", false, false));
+        assertEquals("i", ChipTextNormalizer.normalize("İ", true, false));
+    }
+
+    @Test
+    public void normalize_foldsLatinAccents() {
+        assertEquals("jose", ChipTextNormalizer.normalize("José", true, false));
+        assertEquals("lodz", ChipTextNormalizer.normalize("Łódź", true, false));
+        assertEquals("josé", ChipTextNormalizer.normalize("José", false, false));
+    }
+
+    @Test
+    public void normalize_foldsAccentsAboveTables() {
+        // Latin Extended Additional (Vietnamese) and Greek with tonos
+        assertEquals("nguyen", ChipTextNormalizer.normalize("Nguyễn", true, false));
+        assertEquals("tiep", ChipTextNormalizer.normalize("tiệp", true, false));
+        assertEquals("αθηνα", ChipTextNormalizer.normalize("Αθήνα", true, false));
+        assertEquals("ά", ChipTextNormalizer.normalize("Ά", false, false));
+    }
+
+    @Test
+    public void normalize_removesCombiningAccents() {
+        assertEquals("jose", ChipTextNormalizer.normalize("José", true, false));
+        assertEquals("josé", ChipTextNormalizer.normalize("José", false, false));
+    }
+
+    @Test
+    public void normalize_stripsWhitespace() {
+        assertEquals("5551234", ChipTextNormalizer.normalize("555 12 34", false, true));
+    }
+
+    @Test
+    public void normalize_keepsNulCharacters() {
+        assertEquals("a\u0000b", ChipTextNormalizer.normalize("A\u0000B", true, false));
+    }
+
+    @Test
+    public void normalize_returnsSameStringIfUnchanged() {
+        final String text = "already normal";
+        assertSame(text, ChipTextNormalizer.normalize(text, true, false));
+    }
+
+    @Test
+    public void normalizeQuery_trims() {
+        assertEquals("jo", ChipTextNormalizer.normalizeQuery("  Jo \n", false));
+        assertEquals("", ChipTextNormalizer.normalizeQuery("   ", false));
+    }
+
+    @Test
+    public void normalize_matchesDecompositionForEveryLetter() {
+        // Every folded letter of the BMP should be the base letter of its decomposition
+        for (char c = 0; c < 0xD800; c++) {
+            final char folded = ChipTextNormalizer.fold(c, true);
+            if (Character.isLetter(c) && folded != Character.toLowerCase(c)) {
+                final String decomposed = java.text.Normalizer.normalize(
+                        String.valueOf(Character.toLowerCase(c)), java.text.Normalizer.Form.NFD);
+                assertTrue("Folded " + Integer.toHexString(c), decomposed.length() > 1
+                        || "ıđħłøƀƶŧ".indexOf(Character.toLowerCase(c)) >= 0
+                        || decomposed.charAt(0) == folded);
+            }
+        }
+    }
+}
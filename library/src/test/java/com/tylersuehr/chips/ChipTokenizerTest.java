@@ -0,0 +1,85 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ChipTokenizer}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipTokenizerTest {
+    @Test
+    public void compile_noDelimiter() {
+        assertNull(ChipTokenizer.compile(null, false));
+        assertNull(ChipTokenizer.compile("", true));
+    }
+
+    @Test
+    public void tokenize_trimsPieces() {
+        final Pattern comma = ChipTokenizer.compile(",", false);
+        assertEquals(Arrays.asList("anna@example.com", "bob", "José García"),
+                ChipTokenizer.tokenize("  anna@example.com ,bob,\tJosé García \n", comma));
+    }
+
+    @Test
+    public void tokenize_skipsEmptyPieces() {
+        final Pattern comma = ChipTokenizer.compile(",", false);
+        assertEquals(Arrays.asList("a", "b"), ChipTokenizer.tokenize(",, a,  ,,b,", comma));
+        assertEquals(Collections.emptyList(), ChipTokenizer.tokenize(" , ,", comma));
+    }
+
+    @Test
+    public void tokenize_trailingDelimiter() {
+        final Pattern comma = ChipTokenizer.compile(",", false);
+        assertEquals(Collections.singletonList("anna"), ChipTokenizer.tokenize("anna,", comma));
+    }
+
+    @Test
+    public void tokenize_withoutDelimiter() {
+        final Pattern comma = ChipTokenizer.compile(",", false);
+        assertEquals(Collections.emptyList(), ChipTokenizer.tokenize("anna bob", comma));
+    }
+
+    @Test
+    public void tokenize_literalDelimiter() {
+        final Pattern dot = ChipTokenizer.compile(".", false);
+        assertEquals(Arrays.asList("a", "b"), ChipTokenizer.tokenize("a.b", dot));
+        assertEquals(Collections.emptyList(), ChipTokenizer.tokenize("ab", dot));
+    }
+
+    @Test
+    public void tokenize_regexDelimiter() {
+        final Pattern separators = ChipTokenizer.compile("[,;\\s]+", true);
+        assertEquals(Arrays.asList("a", "b", "c", "d"),
+                ChipTokenizer.tokenize("a, b;c\n\nd;", separators));
+    }
+
+    @Test
+    public void tokenize_zeroWidthRegex() {
+        // Splits before every comma, keeping the commas; doesn't loop forever
+        final Pattern beforeComma = ChipTokenizer.compile("(?=,)", true);
+        assertEquals(Arrays.asList("a", ",b", ",c"),
+                ChipTokenizer.tokenize("a,b,c", beforeComma));
+
+        // Matches the empty string everywhere, so every character is a piece
+        final Pattern empty = ChipTokenizer.compile("x*", true);
+        assertEquals(Arrays.asList("a", "b", "c"), ChipTokenizer.tokenize("a bc", empty));
+    }
+
+    @Test
+    public void tokenize_largePaste() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("user").append(i).append("@example.com, ");
+        }
+        final Pattern comma = ChipTokenizer.compile(",", false);
+        assertEquals(10000, ChipTokenizer.tokenize(sb, comma).size());
+    }
+}
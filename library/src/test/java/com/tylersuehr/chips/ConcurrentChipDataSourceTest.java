@@ -0,0 +1,300 @@
+package com.tylersuehr.chips;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Stress tests for {@link ConcurrentChipDataSource}, changing it from many threads
+ * at once while others check which chips it has; observers are notified on a single
+ * thread, which stands in for the main thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ConcurrentChipDataSourceTest {
+    private static final int PRODUCERS = 4;
+    private static final int CHUNKS = 50;
+    private static final int CHUNK_SIZE = 100;
+
+    private ExecutorService mMainThread;
+    private ConcurrentChipDataSource mDataSource;
+
+
+    @Before
+    public void setUp() {
+        mMainThread = Executors.newSingleThreadExecutor();
+        mDataSource = new ConcurrentChipDataSource(mMainThread);
+    }
+
+    @After
+    public void tearDown() {
+        mMainThread.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void addFilteredChips_fromManyThreads() throws Exception {
+        final List<List<Chip>> chunks = makeChunks(PRODUCERS * CHUNKS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int c = producer; c < chunks.size(); c += PRODUCERS) {
+                            mDataSource.addFilteredChips(chunks.get(c));
+                            // Every chip added is found right away, by any thread
+                            for (Chip chip : chunks.get(c)) {
+                                assertTrue(mDataSource.existsInFiltered(chip));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        // Readers only ever see sorted snapshots that never change
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    int last = 0;
+                    while (last < chunks.size() * CHUNK_SIZE) {
+                        final List<Chip> original = mDataSource.getOriginalChipsSnapshot();
+                        assertSorted(original);
+                        assertTrue(original.size() >= last);
+                        last = original.size();
+                        Thread.yield();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }));
+
+        runAll(threads, start, failure);
+        awaitNotified();
+
+        final List<Chip> all = flatten(chunks);
+        assertSorted(mDataSource.getOriginalChips());
+        assertSorted(mDataSource.getFilteredChips());
+        assertEquals(new HashSet<>(all), new HashSet<>(mDataSource.getOriginalChips()));
+        assertEquals(all.size(), mDataSource.getFilteredChips().size());
+        assertEquals(all.size(), mDataSource.getSearchIndex().search("").size());
+        assertEquals(PRODUCERS * CHUNKS, mDataSource.getVersion());
+    }
+
+    @Test(timeout = 30000)
+    public void takeAndReplace_whileAdding() throws Exception {
+        final List<List<Chip>> chunks = makeChunks(PRODUCERS * CHUNKS);
+        mDataSource.addFilteredChips(chunks.get(0));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int c = 1; c < chunks.size(); c++) {
+                        mDataSource.addFilteredChips(chunks.get(c));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }));
+
+        // Takes chips of the first chunk, and puts every other one back
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    final List<Chip> chunk = chunks.get(0);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        final Chip chip = chunk.get(i);
+                        mDataSource.takeChip(chip);
+                        assertTrue(mDataSource.existsInSelected(chip));
+                        assertFalse(mDataSource.existsInFiltered(chip));
+                        if (i % 2 == 0) {
+                            mDataSource.replaceChip(chip);
+                            assertFalse(mDataSource.existsInSelected(chip));
+                            assertTrue(mDataSource.existsInFiltered(chip));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }));
+
+        runAll(threads, start, failure);
+        awaitNotified();
+
+        final List<Chip> all = flatten(chunks);
+        final List<Chip> original = mDataSource.getOriginalChips();
+        final List<Chip> selected = mDataSource.getSelectedChips();
+        assertSorted(original);
+        assertEquals(CHUNK_SIZE / 2, selected.size());
+        assertEquals(all.size() - selected.size(), original.size());
+        assertEquals(original.size(), mDataSource.getSearchIndex().search("").size());
+
+        final Set<Chip> taken = new HashSet<>(selected);
+        for (Chip chip : all) {
+            assertTrue(mDataSource.existsInDataSource(chip));
+            assertEquals(taken.contains(chip), mDataSource.existsInSelected(chip));
+            assertEquals(!taken.contains(chip), mDataSource.existsInFiltered(chip));
+        }
+    }
+
+    @Test
+    public void existsInFiltered_followsFilteringAndClearing() {
+        final List<Chip> chips = makeChunks(1).get(0);
+        mDataSource.setFilterableChips(chips);
+        final Chip kept = chips.get(0);
+        final Chip dropped = chips.get(1);
+
+        mDataSource.updateFilteredChips(Collections.singletonList(kept));
+        assertTrue(mDataSource.existsInFiltered(kept));
+        assertFalse(mDataSource.existsInFiltered(dropped));
+        assertTrue(mDataSource.existsInDataSource(dropped));
+
+        mDataSource.clearFilteredChips();
+        assertFalse(mDataSource.existsInDataSource(kept));
+        assertFalse(mDataSource.existsInDataSource(dropped));
+    }
+
+    @Test
+    public void updateFilteredChips_skipsChipsTakenMeanwhile() throws Exception {
+        final List<Chip> chips = makeChunks(1).get(0);
+        mDataSource.setFilterableChips(chips);
+        awaitNotified();
+        final List<Chip> results = new ArrayList<>(mDataSource.getOriginalChipsSnapshot());
+
+        // Taken while the results were being filtered from the older snapshot
+        final Chip taken = results.get(3);
+        mDataSource.takeChip(taken);
+        mDataSource.updateFilteredChips(results);
+        awaitNotified();
+
+        assertTrue(mDataSource.existsInSelected(taken));
+        assertFalse(mDataSource.existsInFiltered(taken));
+        assertFalse(mDataSource.getFilteredChips().contains(taken));
+        assertEquals(chips.size() - 1, mDataSource.getFilteredChips().size());
+        assertNull(mDataSource.getFilteredChipById(taken.getId()));
+    }
+
+    @Test
+    public void getChipsById_followChanges() throws Exception {
+        final List<Chip> chips = makeChunks(1).get(0);
+        mDataSource.setFilterableChips(chips);
+        final Chip chip = chips.get(5);
+        final Chip twin = new TestChip(chip.getId(), "Twin", null);
+        mDataSource.addFilteredChip(twin);
+
+        assertSame(chip, mDataSource.getFilteredChipById(chip.getId()));
+        assertNull(mDataSource.getSelectedChipById(chip.getId()));
+
+        // The other chip with the ID is found once the first one is taken
+        mDataSource.takeChip(chip);
+        assertSame(twin, mDataSource.getFilteredChipById(chip.getId()));
+        assertSame(chip, mDataSource.getSelectedChipById(chip.getId()));
+        assertEquals(Collections.singletonList(chip), mDataSource.getSelectedChipsByIds(
+                Arrays.asList(chip.getId(), -1)));
+
+        // Filtering out a chip hides it, but keeps it by its ID
+        mDataSource.updateFilteredChips(Collections.singletonList(chips.get(0)));
+        assertNull(mDataSource.getFilteredChipById(chip.getId()));
+        assertSame(chips.get(0), mDataSource.getFilteredChipById(chips.get(0).getId()));
+
+        mDataSource.replaceChip(chip);
+        awaitNotified();
+        assertNull(mDataSource.getSelectedChipById(chip.getId()));
+        assertSame(chip, mDataSource.getFilteredChipById(chip.getId()));
+
+        mDataSource.clearFilteredChips();
+        assertNull(mDataSource.getFilteredChipById(chip.getId()));
+        assertTrue(mDataSource.getFilteredChipsByIds(
+                Collections.singletonList(twin.getId())).isEmpty());
+    }
+
+    private void runAll(List<Thread> threads, CountDownLatch start,
+                        AtomicReference<Throwable> failure) throws Exception {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    /* Waits for the main thread to publish the latest snapshot */
+    private void awaitNotified() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        mMainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void assertSorted(List<Chip> chips) {
+        for (int i = 1; i < chips.size(); i++) {
+            assertTrue(Chip.getComparator().compare(chips.get(i - 1), chips.get(i)) <= 0);
+        }
+    }
+
+    private static List<List<Chip>> makeChunks(int count) {
+        final Random random = new Random(count);
+        final List<List<Chip>> chunks = new ArrayList<>(count);
+        int id = 0;
+        for (int c = 0; c < count; c++) {
+            final List<Chip> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                chunk.add(new TestChip(id++, "Chip " + random.nextInt(100000), null));
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static List<Chip> flatten(List<List<Chip>> chunks) {
+        final List<Chip> all = new ArrayList<>();
+        for (List<Chip> chunk : chunks) {
+            all.addAll(chunk);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,104 @@
+package com.tylersuehr.chips;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link ContainsChipMatcher}, and for finding the chips it
+ * could match using a {@link TrigramChipSearchIndex}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ContainsChipMatcherTest {
+    private List<Chip> mChips;
+
+
+    @Before
+    public void setUp() {
+        mChips = new ArrayList<>();
+        mChips.add(new TestChip(1, "Anna Smith", "555 123 4567"));
+        mChips.add(new TestChip(2, "José García", null));
+        mChips.add(new TestChip(3, "Hannah Jones", "hannah@example.com"));
+        mChips.add(new TestChip(4, "Bob", "bob@example.com"));
+        mChips.add(new TestChip(5, "Joseph Annan", null));
+        Collections.sort(mChips, Chip.getComparator());
+    }
+
+    @Test
+    public void matches_titleOrStrippedSubtitle() {
+        final ChipMatcher matcher = new ContainsChipMatcher();
+        assertEquals(titles("Anna Smith", "Hannah Jones", "Joseph Annan"), scan(matcher, "ann"));
+        assertEquals(titles("Anna Smith"), scan(matcher, "1234"));
+        assertEquals(titles("Bob", "Hannah Jones"), scan(matcher, "EXAMPLE"));
+    }
+
+    @Test
+    public void matches_foldedAccents() {
+        assertEquals(titles("José García", "Joseph Annan"),
+                scan(new ContainsChipMatcher(true), "jose"));
+        assertEquals(titles("Joseph Annan"), scan(new ContainsChipMatcher(false), "jose"));
+    }
+
+    @Test
+    public void findCandidates_sameHitsAsScanning() {
+        for (boolean fold : new boolean[] {false, true}) {
+            final ChipSearchIndex index = new TrigramChipSearchIndex(fold);
+            index.setChips(mChips);
+            final ChipMatcher matcher = new ContainsChipMatcher(fold);
+            for (String constraint : new String[] {"a", "an", "ann", "anna", "jose", "garc",
+                    "example.com", "xyz", "4567"}) {
+                final ChipMatcher.IndexedQuery query =
+                        (ChipMatcher.IndexedQuery)matcher.compile(constraint);
+                final List<Chip> candidates = query.findCandidates(index);
+                assertNotNull(candidates);
+
+                final List<Chip> hits = new ArrayList<>();
+                for (Chip chip : candidates) {
+                    if (query.matches(chip)) {
+                        hits.add(chip);
+                    }
+                }
+                assertEquals(constraint, scan(matcher, constraint), hits);
+            }
+        }
+    }
+
+    @Test
+    public void findCandidates_nullIfIndexFoldsDifferently() {
+        final ChipSearchIndex index = new TrigramChipSearchIndex(true);
+        index.setChips(mChips);
+        final ChipMatcher.IndexedQuery query =
+                (ChipMatcher.IndexedQuery)new ContainsChipMatcher(false).compile("jose");
+        assertNull(query.findCandidates(index));
+    }
+
+    private List<Chip> scan(ChipMatcher matcher, String constraint) {
+        final ChipMatcher.Query query = matcher.compile(constraint);
+        final List<Chip> hits = new ArrayList<>();
+        for (Chip chip : mChips) {
+            if (query.matches(chip)) {
+                hits.add(chip);
+            }
+        }
+        return hits;
+    }
+
+    private List<Chip> titles(String... titles) {
+        final List<Chip> chips = new ArrayList<>();
+        for (String title : titles) {
+            for (Chip chip : mChips) {
+                if (chip.getTitle().equals(title)) {
+                    chips.add(chip);
+                }
+            }
+        }
+        return chips;
+    }
+}
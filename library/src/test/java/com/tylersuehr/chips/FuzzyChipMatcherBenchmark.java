@@ -0,0 +1,134 @@
+package com.tylersuehr.chips;
+import org.junit.Ignore;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Filters 50,000 contacts with {@link FuzzyChipMatcher}, both scanning every chip and
+ * verifying only the candidates found by a {@link TrigramChipSearchIndex}; both must
+ * find the same hits. Timing them is an ignored test, to run manually, since filtering
+ * with the index should stay within a frame (16 ms) per constraint.
+ *
+ * The constraints are names and emails with typos, of every length that allows edits;
+ * the best of a few runs is printed.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class FuzzyChipMatcherBenchmark {
+    private static final int CONTACTS = 50000;
+    private static final int RUNS = 5;
+    private static final double FRAME_MS = 16;
+
+    private static final String[] FIRST = {"James", "Mary", "John", "Patricia", "Robert",
+            "Jennifer", "Michael", "Linda", "William", "Elizabeth", "David", "Barbara",
+            "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Margaret", "Anthony",
+            "Catherine", "Mark", "Sandra", "Steven", "Ashley", "Andrew", "Kimberly", "Paul",
+            "Emily", "Joshua", "Donna", "Kenneth", "Michelle", "Kevin", "Dorothy", "Brian",
+            "Carol", "George", "Amanda", "Edward", "Melissa", "Ronald", "Deborah"};
+    private static final String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones",
+            "Garcia", "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez",
+            "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson",
+            "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark",
+            "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright",
+            "Scott", "Torres", "Nguyen", "Hill", "Flores", "Green", "Adams", "Nelson",
+            "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter", "Roberts"};
+    private static final String[] DOMAINS = {"gmail.com", "yahoo.com", "outlook.com",
+            "example.org", "company.co.uk"};
+    private static final String[] CONSTRAINTS = {"jhon", "mray", "smiht", "garica",
+            "jenifer", "wiliams", "catherne", "rodrigeuz", "christpher smith",
+            "elizabth", "thompsn", "nguyne", "kimberyl", "mitchel@gmial"};
+
+    @Test
+    public void findCandidates_sameHitsAsScanning() {
+        final List<Chip> chips = makeContacts();
+        final ChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips);
+        final ChipMatcher matcher = new FuzzyChipMatcher();
+
+        for (String constraint : CONSTRAINTS) {
+            assertEquals(constraint, countScanning(matcher, constraint, chips),
+                    countIndexed(matcher, constraint, index, chips));
+        }
+    }
+
+    @Ignore("Prints timings, run manually")
+    @Test
+    public void findCandidates_reportTimings() {
+        final List<Chip> chips = makeContacts();
+        final ChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips);
+        final ChipMatcher matcher = new FuzzyChipMatcher();
+
+        long scanning = Long.MAX_VALUE;
+        long indexed = Long.MAX_VALUE;
+        int hits = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (String constraint : CONSTRAINTS) {
+                countScanning(matcher, constraint, chips);
+            }
+            scanning = Math.min(scanning, System.nanoTime() - start);
+
+            hits = 0;
+            start = System.nanoTime();
+            for (String constraint : CONSTRAINTS) {
+                hits += countIndexed(matcher, constraint, index, chips);
+            }
+            indexed = Math.min(indexed, System.nanoTime() - start);
+        }
+
+        final double scanningMs = scanning / 1e6 / CONSTRAINTS.length;
+        final double indexedMs = indexed / 1e6 / CONSTRAINTS.length;
+        System.out.println(String.format(Locale.US,
+                "Fuzzy filtering %d contacts: scanning %.2f ms, indexed %.2f ms per constraint"
+                        + " (frame: %.0f ms, %d hits)",
+                CONTACTS, scanningMs, indexedMs, FRAME_MS, hits));
+    }
+
+    private static int countScanning(ChipMatcher matcher, String constraint, List<Chip> chips) {
+        return count(matcher.compile(constraint), chips);
+    }
+
+    /* Counts the hits among the candidates found by the index */
+    private static int countIndexed(ChipMatcher matcher, String constraint,
+                                    ChipSearchIndex index, List<Chip> chips) {
+        final ChipMatcher.IndexedQuery query =
+                (ChipMatcher.IndexedQuery)matcher.compile(constraint);
+        final List<Chip> candidates = query.findCandidates(index);
+        return count(query, (candidates != null) ? candidates : chips);
+    }
+
+    private static int count(ChipMatcher.Query query, List<Chip> chips) {
+        int hits = 0;
+        for (Chip chip : chips) {
+            if (query.matches(chip)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static List<Chip> makeContacts() {
+        final Random random = new Random(42);
+        final List<Chip> chips = new ArrayList<>(CONTACTS);
+        for (int i = 0; i < CONTACTS; i++) {
+            final String first = FIRST[random.nextInt(FIRST.length)];
+            final String last = LAST[random.nextInt(LAST.length)];
+            final String email = (first.charAt(0) + last + random.nextInt(1000) + "@"
+                    + DOMAINS[random.nextInt(DOMAINS.length)]).toLowerCase(Locale.US);
+            chips.add(new TestChip(i, first + " " + last, email));
+        }
+        Collections.sort(chips, Chip.getComparator());
+        return chips;
+    }
+}
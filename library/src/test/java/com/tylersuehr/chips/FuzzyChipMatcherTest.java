@@ -0,0 +1,145 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link FuzzyChipMatcher}, and for finding the chips it could
+ * match using a {@link TrigramChipSearchIndex}; the candidates must never miss a chip
+ * that scanning all of them would match.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class FuzzyChipMatcherTest {
+    private static final String LETTERS = "abcdef";
+
+    @Test
+    public void matches_editsGrowWithLength() {
+        final ChipMatcher matcher = new FuzzyChipMatcher();
+        final Chip chip = new TestChip(1, "Catherine Jones", "cat@example.com");
+        assertTrue(matcher.compile("cathrine").matches(chip));  // Deletion
+        assertTrue(matcher.compile("cahterine").matches(chip)); // Swap
+        assertTrue(matcher.compile("jnoes").matches(chip));     // Swap
+        assertTrue(matcher.compile("exampel.com").matches(chip));
+        assertFalse(matcher.compile("jx").matches(chip));       // No edits below three
+        assertFalse(matcher.compile("jxnxs").matches(chip));    // One edit below six
+        assertFalse(matcher.compile("kxthxrinx").matches(chip));
+    }
+
+    @Test
+    public void matches_maxEdits() {
+        final Chip chip = new TestChip("Catherine");
+        assertFalse(new FuzzyChipMatcher(0, false).compile("cathrine").matches(chip));
+        assertTrue(new FuzzyChipMatcher(1, false).compile("cathrine").matches(chip));
+        assertFalse(new FuzzyChipMatcher(1, false).compile("kathrine").matches(chip));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_negativeMaxEdits() {
+        new FuzzyChipMatcher(-1, false);
+    }
+
+    @Test
+    public void getMinSharedGrams_swapKeepsCharacters() {
+        assertEquals(4, FuzzyChipMatcher.getMinSharedGrams(6, 3, 0));
+        assertEquals(-1, FuzzyChipMatcher.getMinSharedGrams(5, 3, 1));
+        assertEquals(4, FuzzyChipMatcher.getMinSharedGrams(8, 2, 1));
+        assertEquals(6, FuzzyChipMatcher.getMinSharedGrams(8, 1, 2));
+    }
+
+    @Test
+    public void findCandidates_neverMissesMatches() {
+        final Random random = new Random(7);
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            chips.add(new TestChip(i, randomText(random, 3 + random.nextInt(10)),
+                    random.nextBoolean() ? randomText(random, 6) : null));
+        }
+        Collections.sort(chips, Chip.getComparator());
+
+        final ChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips);
+        for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+            final ChipMatcher matcher = new FuzzyChipMatcher(maxEdits, false);
+            for (int i = 0; i < 300; i++) {
+                final String title = chips.get(random.nextInt(chips.size())).getTitle();
+                final int start = random.nextInt(title.length());
+                final String constraint = mutate(random, title.substring(start,
+                        Math.min(title.length(), start + 1 + random.nextInt(9))));
+
+                final ChipMatcher.IndexedQuery query =
+                        (ChipMatcher.IndexedQuery)matcher.compile(constraint);
+                List<Chip> candidates = query.findCandidates(index);
+                if (candidates == null) {
+                    candidates = chips;
+                }
+                assertEquals(constraint, scan(query, chips), scan(query, candidates));
+            }
+        }
+    }
+
+    @Test
+    public void findCandidates_prunesLongConstraints() {
+        final List<Chip> chips = new ArrayList<>();
+        chips.add(new TestChip("Catherine Jones"));
+        chips.add(new TestChip("Katharine Hepburn"));
+        chips.add(new TestChip("Bob Smith"));
+        chips.add(new TestChip("Robert Smyth"));
+        final ChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips);
+
+        final ChipMatcher.IndexedQuery query =
+                (ChipMatcher.IndexedQuery)new FuzzyChipMatcher().compile("cathrine");
+        final List<Chip> candidates = query.findCandidates(index);
+        assertNotNull(candidates);
+        assertTrue(candidates.contains(chips.get(0)));
+        assertFalse(candidates.contains(chips.get(2)));
+    }
+
+    private static List<Chip> scan(ChipMatcher.Query query, List<Chip> chips) {
+        final List<Chip> hits = new ArrayList<>();
+        for (Chip chip : chips) {
+            if (query.matches(chip)) {
+                hits.add(chip);
+            }
+        }
+        return hits;
+    }
+
+    private static String randomText(Random random, int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return sb.toString();
+    }
+
+    /* Applies up to two random edits */
+    private static String mutate(Random random, String text) {
+        final StringBuilder sb = new StringBuilder(text);
+        final int edits = random.nextInt(3);
+        for (int i = 0; i < edits && sb.length() > 1; i++) {
+            final int at = random.nextInt(sb.length());
+            final char c = LETTERS.charAt(random.nextInt(LETTERS.length()));
+            switch (random.nextInt(4)) {
+                case 0: sb.deleteCharAt(at); break;
+                case 1: sb.insert(at, c); break;
+                case 2: sb.setCharAt(at, c); break;
+                default:
+                    if (at + 1 < sb.length()) {
+                        final char swapped = sb.charAt(at);
+                        sb.setCharAt(at, sb.charAt(at + 1));
+                        sb.setCharAt(at + 1, swapped);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,247 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for the sorted inserts and merges of {@link ListChipDataSource},
+ * the events they post, and its cached snapshot of the original chips.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ListChipDataSourceTest {
+    @Test
+    public void insertionPoint() {
+        final List<Chip> chips = chips("b", "d", "d", "f");
+        assertEquals(0, ListChipDataSource.insertionPoint(chips, new TestChip("a")));
+        assertEquals(1, ListChipDataSource.insertionPoint(chips, new TestChip("c")));
+        assertEquals(4, ListChipDataSource.insertionPoint(chips, new TestChip("g")));
+        assertEquals(0, ListChipDataSource.insertionPoint(new ArrayList<Chip>(), new TestChip("a")));
+
+        // Equal chips go after those already there
+        assertEquals(1, ListChipDataSource.insertionPoint(chips, new TestChip("b")));
+        assertEquals(3, ListChipDataSource.insertionPoint(chips, new TestChip("d")));
+        assertEquals(4, ListChipDataSource.insertionPoint(chips, new TestChip("f")));
+    }
+
+    @Test
+    public void addFilteredChip_insertsSorted() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("b", "d"));
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        dataSource.addFilteredChip(new TestChip("c"));
+
+        assertTitles(dataSource.getOriginalChips(), "b", "c", "d");
+        assertTitles(dataSource.getFilteredChips(), "b", "c", "d");
+        assertEquals(Arrays.asList("+original 1,1", "+filtered 1,1", "finished"), observer.events);
+    }
+
+    @Test
+    public void addFilteredChips_mergesRuns() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("b", "d", "f"));
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        // Unsorted, so the batch has to be sorted before being merged
+        dataSource.addFilteredChips(chips("h", "c", "a", "g", "e"));
+
+        assertTitles(dataSource.getOriginalChips(), "a", "b", "c", "d", "e", "f", "g", "h");
+        assertTitles(dataSource.getFilteredChips(), "a", "b", "c", "d", "e", "f", "g", "h");
+        assertEquals(Arrays.asList(
+                "+original 0,1", "+original 2,1", "+original 4,1", "+original 6,2",
+                "+filtered 0,1", "+filtered 2,1", "+filtered 4,1", "+filtered 6,2",
+                "finished"), observer.events);
+    }
+
+    @Test
+    public void addFilteredChips_equalTitlesGoAfter() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final Chip first = new TestChip(1, "b", null);
+        dataSource.setFilterableChips(Arrays.asList(first, new TestChip("a")));
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        final Chip second = new TestChip(2, "b", null);
+        dataSource.addFilteredChips(Collections.singletonList(second));
+
+        assertSame(first, dataSource.getOriginalChips().get(1));
+        assertSame(second, dataSource.getOriginalChips().get(2));
+        assertEquals(Arrays.asList("+original 2,1", "+filtered 2,1", "finished"), observer.events);
+    }
+
+    @Test
+    public void addFilteredChips_afterTaking() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("a", "c", "e"));
+        dataSource.takeChip(1);
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        dataSource.addFilteredChips(chips("d", "b"));
+
+        assertTitles(dataSource.getOriginalChips(), "a", "b", "d", "e");
+        assertTitles(dataSource.getFilteredChips(), "a", "b", "d", "e");
+        assertTitles(dataSource.getSelectedChips(), "c");
+        assertEquals(Arrays.asList(
+                "+original 1,2", "+filtered 1,2", "finished"), observer.events);
+        assertTrue(dataSource.existsInFiltered(dataSource.getFilteredChip(2)));
+    }
+
+    @Test
+    public void addFilteredChips_appendedToUnsortedFiltered() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("b", "d", "f"));
+        final List<Chip> original = dataSource.getOriginalChips();
+        dataSource.updateFilteredChips(Arrays.asList(original.get(2), original.get(0)));
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        // Ranked results aren't sorted, so there's nowhere to insert them but the end
+        dataSource.addFilteredChip(new TestChip("c"));
+        dataSource.addFilteredChips(chips("g", "a"));
+
+        assertTitles(dataSource.getOriginalChips(), "a", "b", "c", "d", "f", "g");
+        assertTitles(dataSource.getFilteredChips(), "f", "b", "c", "a", "g");
+        assertEquals(Arrays.asList(
+                "+original 1,1", "+filtered 2,1", "finished",
+                "+original 0,1", "+original 5,1", "+filtered 3,2", "finished"), observer.events);
+    }
+
+    @Test
+    public void addFilteredChips_searchable() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("anna", "bob", "carl", "dora"));
+        dataSource.addFilteredChips(chips("bobby"));
+        assertTitles(dataSource.getSearchIndex().search("bob"), "bob", "bobby");
+
+        // A batch at least as big as the list rebuilds the index instead
+        dataSource.addFilteredChips(chips("robert", "bobbie", "zed", "yan", "xia", "wes"));
+        assertTitles(dataSource.getSearchIndex().search("bob"), "bob", "bobbie", "bobby");
+    }
+
+    @Test
+    public void getOriginalChipsSnapshot_cached() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("a", "b"));
+
+        final List<Chip> snapshot = dataSource.getOriginalChipsSnapshot();
+        assertTitles(snapshot, "a", "b");
+        assertSame(snapshot, dataSource.getOriginalChipsSnapshot());
+
+        // Changes that don't touch the original chips keep it
+        dataSource.addSelectedChip(new TestChip("z"));
+        assertSame(snapshot, dataSource.getOriginalChipsSnapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getOriginalChipsSnapshot_immutable() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("a", "b"));
+        dataSource.getOriginalChipsSnapshot().add(new TestChip("c"));
+    }
+
+    @Test
+    public void getOriginalChipsSnapshot_invalidated() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        dataSource.setFilterableChips(chips("a", "c"));
+
+        List<Chip> snapshot = dataSource.getOriginalChipsSnapshot();
+        dataSource.addFilteredChip(new TestChip("b"));
+        assertTitles(snapshot, "a", "c");
+        snapshot = assertChanged(dataSource, snapshot, "a", "b", "c");
+
+        dataSource.addFilteredChips(chips("d", "e"));
+        snapshot = assertChanged(dataSource, snapshot, "a", "b", "c", "d", "e");
+
+        dataSource.takeChip(dataSource.getFilteredChip(0));
+        snapshot = assertChanged(dataSource, snapshot, "b", "c", "d", "e");
+
+        dataSource.takeChip(0);
+        snapshot = assertChanged(dataSource, snapshot, "c", "d", "e");
+
+        dataSource.replaceChip(0);
+        snapshot = assertChanged(dataSource, snapshot, "a", "c", "d", "e");
+
+        dataSource.replaceChip(dataSource.getSelectedChip(0));
+        snapshot = assertChanged(dataSource, snapshot, "a", "b", "c", "d", "e");
+
+        dataSource.setFilterableChips(chips("x"));
+        snapshot = assertChanged(dataSource, snapshot, "x");
+
+        dataSource.clearFilteredChips();
+        assertChanged(dataSource, snapshot);
+    }
+
+    private static List<Chip> assertChanged(ListChipDataSource dataSource,
+                                            List<Chip> old, String... titles) {
+        final List<Chip> snapshot = dataSource.getOriginalChipsSnapshot();
+        assertNotSame(old, snapshot);
+        assertTitles(snapshot, titles);
+        return snapshot;
+    }
+
+    private static void assertTitles(List<Chip> chips, String... titles) {
+        final List<String> actual = new ArrayList<>(chips.size());
+        for (Chip chip : chips) {
+            actual.add(chip.getTitle());
+        }
+        assertEquals(Arrays.asList(titles), actual);
+    }
+
+    private static List<Chip> chips(String... titles) {
+        final List<Chip> chips = new ArrayList<>(titles.length);
+        for (String title : titles) {
+            chips.add(new TestChip(title));
+        }
+        return chips;
+    }
+
+
+    /**
+     * Records the events of the original and filtered chips as strings.
+     */
+    private static final class RecordingObserver implements ChipDataSource.ListChangeObserver {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onChipsInserted(int list, int position, int count) {
+            record("+", list, position, count);
+        }
+
+        @Override
+        public void onChipsRemoved(int list, int position, int count) {
+            record("-", list, position, count);
+        }
+
+        @Override
+        public void onChipMoved(int list, int fromPosition, int toPosition) {
+            record("~", list, fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChipChangesFinished() {
+            events.add("finished");
+        }
+
+        @Override
+        public void onChipDataSourceChanged() {
+            events.add("changed");
+        }
+
+        private void record(String type, int list, int first, int second) {
+            if (list == ChipDataSource.SELECTED) { return; }
+            events.add(type + (list == ChipDataSource.ORIGINAL ? "original " : "filtered ")
+                    + first + "," + second);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Stress tests for the copy-on-write observer arrays of {@link ObservableChipDataSource}:
+ * observers are added and removed by many threads while another one keeps notifying
+ * them, which must never fail, lose an observer, or notify a removed one afterwards.
+ *
+ * Also tests how the events posted during a batch are dispatched when it ends.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ObservableChipDataSourceTest {
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 2000;
+    private static final int NOTIFICATIONS = 5000;
+
+    @Test(timeout = 30000)
+    public void addAndRemove_whileNotifying() throws Exception {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final CountingObserver permanent = new CountingObserver();
+        dataSource.addChangedObserver(permanent);
+        dataSource.addSelectionObserver(permanent);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        final List<CountingObserver> removed = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final List<CountingObserver> mine = new ArrayList<>();
+            removed.addAll(makeObservers(mine, ROUNDS));
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (CountingObserver observer : mine) {
+                            dataSource.addChangedObserver(observer);
+                            dataSource.addSelectionObserver(observer);
+                            Thread.yield();
+                            dataSource.removeChangedObserver(observer);
+                            dataSource.removeSelectionObserver(observer);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        // Only this thread changes the data source, like the main thread would
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 0; i < NOTIFICATIONS; i++) {
+                        dataSource.addSelectedChip(new TestChip("Chip " + i));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        // Observers that stayed the whole time got every notification
+        assertEquals(NOTIFICATIONS, permanent.changes.get());
+        assertEquals(NOTIFICATIONS, permanent.selections.get());
+        assertEquals(1, dataSource.mChangeObservers.length);
+        assertEquals(1, dataSource.mSelectionObservers.length);
+
+        // Removed observers aren't notified anymore
+        for (CountingObserver observer : removed) {
+            observer.removed.set(true);
+        }
+        dataSource.addSelectedChip(new TestChip("Last"));
+        for (CountingObserver observer : removed) {
+            assertFalse(observer.notifiedAfterRemoved.get());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void add_fromManyThreadsLosesNone() throws Exception {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        final List<CountingObserver> all = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final List<CountingObserver> mine = new ArrayList<>();
+            all.addAll(makeObservers(mine, ROUNDS / 4));
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (CountingObserver observer : mine) {
+                        dataSource.addChangedObserver(observer);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        dataSource.addSelectedChip(new TestChip("Chip"));
+        assertEquals(all.size(), dataSource.mChangeObservers.length);
+        for (CountingObserver observer : all) {
+            assertEquals(1, observer.changes.get());
+        }
+    }
+
+    @Test
+    public void remove_duringNotification() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final CountingObserver second = new CountingObserver();
+        final CountingObserver first = new CountingObserver() {
+            @Override
+            public void onChipDataSourceChanged() {
+                super.onChipDataSourceChanged();
+                dataSource.removeChangedObserver(this);
+                dataSource.removeChangedObserver(second);
+            }
+        };
+        dataSource.addChangedObserver(first);
+        dataSource.addChangedObserver(second);
+
+        // The notification that's already going still reaches both of them
+        dataSource.addSelectedChip(new TestChip("Chip"));
+        assertEquals(1, first.changes.get());
+        assertEquals(1, second.changes.get());
+
+        dataSource.addSelectedChip(new TestChip("Chip"));
+        assertEquals(1, first.changes.get());
+        assertEquals(1, second.changes.get());
+        assertEquals(0, dataSource.mChangeObservers.length);
+    }
+
+    @Test
+    public void endBatch_dispatchesPostedEvents() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        dataSource.beginBatch();
+        dataSource.addFilteredChip(new TestChip("b"));
+        dataSource.addSelectedChip(new TestChip("z"));
+        assertTrue(observer.events.isEmpty());
+        dataSource.endBatch();
+
+        assertEquals(Arrays.asList("+2 0,1", "+1 0,1", "+0 0,1", "finished"), observer.events);
+    }
+
+    @Test
+    public void endBatch_replacedListDropsEvents() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final RecordingObserver observer = new RecordingObserver();
+        final CountingObserver counter = new CountingObserver();
+        dataSource.addChangedObserver(observer);
+        dataSource.addChangedObserver(counter);
+
+        // Replacing the filterable chips posts no events, so the others are meaningless
+        dataSource.beginBatch();
+        dataSource.addFilteredChip(new TestChip("b"));
+        dataSource.setFilterableChips(Arrays.<Chip>asList(new TestChip("x"), new TestChip("y")));
+        dataSource.addSelectedChip(new TestChip("z"));
+        dataSource.endBatch();
+
+        assertEquals(Collections.singletonList("changed"), observer.events);
+        assertEquals(1, counter.changes.get());
+
+        // The next batch is described by its events again
+        observer.events.clear();
+        dataSource.beginBatch();
+        dataSource.addFilteredChip(new TestChip("a"));
+        dataSource.endBatch();
+        assertEquals(Arrays.asList("+2 0,1", "+1 0,1", "finished"), observer.events);
+    }
+
+    @Test
+    public void endBatch_nestedReplacedList() {
+        final ListChipDataSource dataSource = new ListChipDataSource();
+        final RecordingObserver observer = new RecordingObserver();
+        dataSource.addChangedObserver(observer);
+
+        dataSource.beginBatch();
+        dataSource.beginBatch();
+        dataSource.setFilterableChips(Collections.<Chip>singletonList(new TestChip("x")));
+        dataSource.endBatch();
+        dataSource.addFilteredChip(new TestChip("y"));
+        assertTrue(observer.events.isEmpty());
+        dataSource.endBatch();
+
+        assertEquals(Collections.singletonList("changed"), observer.events);
+    }
+
+    private static List<CountingObserver> makeObservers(List<CountingObserver> observers,
+                                                        int count) {
+        for (int i = 0; i < count; i++) {
+            observers.add(new CountingObserver());
+        }
+        return observers;
+    }
+
+
+    /**
+     * Counts its notifications, and remembers being notified once marked as removed.
+     */
+    private static class CountingObserver implements ChipDataSource.ChangeObserver,
+            ChipDataSource.SelectionObserver {
+        final AtomicInteger changes = new AtomicInteger();
+        final AtomicInteger selections = new AtomicInteger();
+        final AtomicBoolean removed = new AtomicBoolean();
+        final AtomicBoolean notifiedAfterRemoved = new AtomicBoolean();
+
+        @Override
+        public void onChipDataSourceChanged() {
+            changes.incrementAndGet();
+            if (removed.get()) {
+                notifiedAfterRemoved.set(true);
+            }
+        }
+
+        @Override
+        public void onChipSelected(Chip addedChip) {
+            selections.incrementAndGet();
+        }
+
+        @Override
+        public void onChipDeselected(Chip removedChip) {}
+    }
+
+
+    /**
+     * Records its events as strings, like "+list position,count".
+     */
+    private static final class RecordingObserver implements ChipDataSource.ListChangeObserver {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onChipsInserted(int list, int position, int count) {
+            events.add("+" + list + " " + position + "," + count);
+        }
+
+        @Override
+        public void onChipsRemoved(int list, int position, int count) {
+            events.add("-" + list + " " + position + "," + count);
+        }
+
+        @Override
+        public void onChipMoved(int list, int fromPosition, int toPosition) {
+            events.add("~" + list + " " + fromPosition + "," + toPosition);
+        }
+
+        @Override
+        public void onChipChangesFinished() {
+            events.add("finished");
+        }
+
+        @Override
+        public void onChipDataSourceChanged() {
+            events.add("changed");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tylersuehr.chips;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link Chip} used by the unit tests, whose title and subtitle
+ * can be changed.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class TestChip extends Chip {
+    private final Object id;
+    private String title;
+    private String subtitle;
+
+
+    TestChip(Object id, String title, String subtitle) {
+        this.id = id;
+        this.title = title;
+        this.subtitle = subtitle;
+    }
+
+    TestChip(String title) {
+        this(title, title, null);
+    }
+
+    void setTitle(String title) {
+        this.title = title;
+    }
+
+    void setSubtitle(String subtitle) {
+        this.subtitle = subtitle;
+    }
+
+    @Override
+    public Object getId() {
+        return id;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public String getSubtitle() {
+        return subtitle;
+    }
+
+    @Override
+    public Uri getAvatarUri() {
+        return null;
+    }
+
+    @Override
+    public Drawable getAvatarDrawable() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
@@ -0,0 +1,226 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Local unit tests for {@link TrigramChipSearchIndex}, including its results after
+ * chips are removed, revived, or dropped by compacting the index.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class TrigramChipSearchIndexTest {
+    @Test
+    public void search_shortAndLongQueries() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(Arrays.asList(
+                new TestChip(1, "Anna Bell", "555 123 4567"),
+                new TestChip(2, "Bob Annan", "bob@example.com"),
+                new TestChip(3, "Carl", null)));
+
+        assertTitles(index.search(""), "Anna Bell", "Bob Annan", "Carl");
+        assertTitles(index.search("AN"), "Anna Bell", "Bob Annan");
+        assertTitles(index.search("ann"), "Anna Bell", "Bob Annan");
+        assertTitles(index.search("annan"), "Bob Annan");
+        assertTitles(index.search("na bel"), "Anna Bell");
+        assertTitles(index.search("5551234"), "Anna Bell"); // Subtitle without whitespace
+        assertTitles(index.search("example.com"), "Bob Annan");
+        assertTitles(index.search("zed"));
+        assertTitles(index.search("carlos"));
+    }
+
+    @Test
+    public void search_foldsAccents() {
+        final List<Chip> chips = Arrays.<Chip>asList(new TestChip("José"), new TestChip("Josh"));
+        final TrigramChipSearchIndex plain = new TrigramChipSearchIndex();
+        final TrigramChipSearchIndex folded = new TrigramChipSearchIndex(true);
+        plain.setChips(chips);
+        folded.setChips(chips);
+
+        assertTitles(plain.search("jose"));
+        assertTitles(plain.search("josé"), "José");
+        assertTitles(folded.search("jose"), "José");
+        assertTitles(folded.search("JOSÉ"), "José");
+        assertTitles(folded.search("jos"), "José", "Josh");
+    }
+
+    @Test
+    public void search_sortsChipsAddedOutOfOrder() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        index.addChip(new TestChip("Marta"));
+        index.addChip(new TestChip("Mark"));
+        index.addChip(new TestChip("Amar"));
+
+        assertTitles(index.search(""), "Amar", "Mark", "Marta");
+        assertTitles(index.search("mar"), "Amar", "Mark", "Marta");
+        assertTitles(index.search("mart"), "Marta");
+    }
+
+    @Test
+    public void search_skipsRemovedChips() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final List<Chip> chips = chips("Anna", "Annabel", "Hannah");
+        index.setChips(chips);
+        index.removeChip(chips.get(1));
+        index.removeChip(new TestChip("Anna")); // Never indexed
+
+        assertTitles(index.search(""), "Anna", "Hannah");
+        assertTitles(index.search("ann"), "Anna", "Hannah");
+        assertTitles(index.search("anna"), "Anna", "Hannah");
+        assertTitles(index.search("annab"));
+        assertFalse(index.matches(chips.get(0), "bel"));
+        assertTrue(index.matches(chips.get(1), "bel")); // Uses its own keys
+    }
+
+    @Test
+    public void addChip_revivesUnchangedChip() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final List<Chip> chips = chips("Anna", "Bob", "Carl");
+        index.setChips(chips);
+        index.removeChip(chips.get(1));
+        index.addChip(chips.get(1));
+        index.addChip(chips.get(1)); // Already indexed
+
+        assertTitles(index.search(""), "Anna", "Bob", "Carl");
+        assertTitles(index.search("bob"), "Bob");
+    }
+
+    @Test
+    public void addChip_reindexesChangedChip() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final TestChip bob = new TestChip(2, "Bob", "bob@example.com");
+        index.setChips(Arrays.<Chip>asList(new TestChip("Anna"), bob, new TestChip("Carl")));
+        index.removeChip(bob);
+
+        bob.setTitle("Robert");
+        bob.setSubtitle("robert@example.com");
+        index.addChip(bob);
+
+        assertTitles(index.search(""), "Anna", "Carl", "Robert");
+        assertTitles(index.search("bob"));
+        assertTitles(index.search("bob@"));
+        assertTitles(index.search("rob"), "Robert");
+        assertTitles(index.search("robert@"), "Robert");
+    }
+
+    @Test
+    public void removeChip_compactsMostlyRemovedIndex() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            chips.add(new TestChip("Chip " + i));
+        }
+        index.setChips(chips);
+
+        // The sixth removal is more than half of the index, so it gets compacted
+        for (int i = 0; i < 10; i += 2) {
+            index.removeChip(chips.get(i));
+        }
+        index.removeChip(chips.get(9));
+        assertTitles(index.search("chip"), "Chip 1", "Chip 3", "Chip 5", "Chip 7");
+        assertTitles(index.search("chip 5"), "Chip 5");
+        assertTitles(index.search("chip 6"));
+        assertTitles(index.searchGrams("chip 3", false, 3, 4), "Chip 3");
+
+        // Removed chips are gone from the compacted index, so they're added again
+        index.addChip(chips.get(6));
+        index.addChip(chips.get(0));
+        assertTitles(index.search("chip"),
+                "Chip 0", "Chip 1", "Chip 3", "Chip 5", "Chip 6", "Chip 7");
+        assertTitles(index.search("chip 6"), "Chip 6");
+
+        // Compacting again keeps them out of order, so they're still sorted
+        index.removeChip(chips.get(1));
+        index.removeChip(chips.get(3));
+        index.removeChip(chips.get(5));
+        index.removeChip(chips.get(7));
+        assertTitles(index.search("chip"), "Chip 0", "Chip 6");
+        index.addChip(chips.get(2));
+        assertTitles(index.search(""), "Chip 0", "Chip 2", "Chip 6");
+    }
+
+    @Test
+    public void refine_onlyKeepsMatches() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final List<Chip> chips = chips("Anna", "Annabel", "Bob", "Hannah");
+        index.setChips(chips);
+        index.removeChip(chips.get(3));
+
+        final List<Chip> anns = index.search("ann");
+        assertTitles(anns, "Anna", "Annabel");
+        assertTitles(index.refine(anns, "anna"), "Anna", "Annabel");
+        assertTitles(index.refine(anns, "annab"), "Annabel");
+        assertTitles(index.refine(chips, "nnah"), "Hannah");
+        assertTitles(index.refine(chips, ""), "Anna", "Annabel", "Bob", "Hannah");
+    }
+
+    @Test
+    public void searchGrams_countsSharedGrams() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        final List<Chip> chips = chips("Bob", "Mark", "Marta", "Martha");
+        index.setChips(chips);
+
+        // Bigrams of "marta" are ma, ar, rt, and ta; "mark" only shares two
+        assertTitles(index.searchGrams("marta", false, 2, 3), "Marta", "Martha");
+        assertTitles(index.searchGrams("marta", false, 2, 2), "Mark", "Marta", "Martha");
+        assertTitles(index.searchGrams("marta", false, 2, 4), "Marta");
+        assertTitles(index.searchGrams("marta", false, 3, 1), "Mark", "Marta", "Martha");
+        assertTitles(index.searchGrams("marta", false, 1, 5), "Marta", "Martha");
+        assertTitles(index.searchGrams("zzz", false, 2, 1));
+
+        // More grams required than the query has
+        assertTitles(index.searchGrams("mar", false, 2, 3));
+
+        index.removeChip(chips.get(2));
+        assertTitles(index.searchGrams("marta", false, 2, 3), "Martha");
+    }
+
+    @Test
+    public void searchGrams_unsupported() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips("Marta"));
+        assertNull(index.searchGrams("marta", true, 2, 1));
+        assertNull(index.searchGrams("marta", false, 0, 1));
+        assertNull(index.searchGrams("marta", false, 4, 1));
+        assertNull(new TrigramChipSearchIndex(true).searchGrams("marta", false, 2, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchGrams_minSharedNotPositive() {
+        new TrigramChipSearchIndex().searchGrams("marta", false, 2, 0);
+    }
+
+    @Test
+    public void clear_removesEverything() {
+        final TrigramChipSearchIndex index = new TrigramChipSearchIndex();
+        index.setChips(chips("Anna", "Bob"));
+        index.clear();
+        assertTitles(index.search(""));
+        assertTitles(index.search("ann"));
+        assertTitles(index.searchGrams("anna", false, 2, 1));
+    }
+
+    private static void assertTitles(List<Chip> chips, String... titles) {
+        final List<String> actual = new ArrayList<>(chips.size());
+        for (Chip chip : chips) {
+            actual.add(chip.getTitle());
+        }
+        assertEquals(Arrays.asList(titles), actual);
+    }
+
+    private static List<Chip> chips(String... titles) {
+        final List<Chip> chips = new ArrayList<>(titles.length);
+        for (String title : titles) {
+            chips.add(new TestChip(title));
+        }
+        Collections.sort(chips, Chip.getComparator());
+        return chips;
+    }
+}